@@ -6,7 +6,8 @@ CREATE TABLE `friend_request` (
   `requester` varchar(45) NOT NULL,
   `requested` varchar(45) NOT NULL,
   `date` timestamp NOT NULL,
-  PRIMARY KEY (`requester`, `requested`)
+  PRIMARY KEY (`requester`, `requested`),
+  KEY `idx_friend_request_requested` (`requested`)
 ) DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
 
 
@@ -2,9 +2,14 @@ USE fit_hub;
 
 DROP TABLE IF EXISTS `friends`;
 
+-- Each friendship is stored once, with username1 < username2 (binary order, as the collation compares).
+-- The primary key finds the friends of a user stored as username1, the reverse key the ones stored as username2.
 CREATE TABLE `friends` (
-  `username1` varchar(45) DEFAULT NULL,
-  `username2` varchar(45) DEFAULT NULL
+  `username1` varchar(45) NOT NULL,
+  `username2` varchar(45) NOT NULL,
+  PRIMARY KEY (`username1`, `username2`),
+  KEY `idx_friends_reverse` (`username2`, `username1`),
+  CONSTRAINT `chk_friends_ordered` CHECK (`username1` < `username2`)
 ) DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
 
 LOCK TABLES `friends` WRITE;
@@ -0,0 +1,8 @@
+-- Adds to an existing `friend_request` table the index friend_request.sql creates on `requested`,
+-- used to list the incoming requests of a user. The index is built online, reads and writes continue meanwhile.
+-- It fails with "Duplicate key name" if the table already has it, leaving the table as it is.
+USE fit_hub;
+
+ALTER TABLE `friend_request`
+  ADD INDEX `idx_friend_request_requested` (`requested`),
+  ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,49 @@
+-- Moves an existing `friends` table (no keys, a friendship may be stored in any order or twice)
+-- to the canonical one of friends.sql without stopping the server:
+--   1. the canonical table is created next to the old one
+--   2. triggers copy every write made meanwhile to the old table
+--   3. the existing rows are copied, ordered and without duplicates
+--   4. both tables are swapped with an atomic rename
+-- The old server version keeps working with either table: it inserts friendships in the order of the request
+-- and looks them up in both orders. That is why the table has no CHECK on the order yet, a reversed insert of
+-- the old server would fail and the friendship would be lost. Once the new server version is deployed,
+-- friends_ordered_check.sql orders the rows the old one wrote and adds the CHECK.
+USE fit_hub;
+
+DROP TABLE IF EXISTS `friends_canonical`;
+
+CREATE TABLE `friends_canonical` (
+  `username1` varchar(45) NOT NULL,
+  `username2` varchar(45) NOT NULL,
+  PRIMARY KEY (`username1`, `username2`),
+  KEY `idx_friends_reverse` (`username2`, `username1`)
+) DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_bin;
+
+DELIMITER //
+
+CREATE TRIGGER `friends_migration_insert` AFTER INSERT ON `friends` FOR EACH ROW
+BEGIN
+  IF NEW.username1 IS NOT NULL AND NEW.username2 IS NOT NULL AND NEW.username1 <> NEW.username2 THEN
+    INSERT IGNORE INTO `friends_canonical` VALUES (LEAST(NEW.username1, NEW.username2), GREATEST(NEW.username1, NEW.username2));
+  END IF;
+END //
+
+CREATE TRIGGER `friends_migration_delete` AFTER DELETE ON `friends` FOR EACH ROW
+BEGIN
+  DELETE FROM `friends_canonical`
+  WHERE username1 = LEAST(OLD.username1, OLD.username2) AND username2 = GREATEST(OLD.username1, OLD.username2);
+END //
+
+DELIMITER ;
+
+-- The columns are utf8mb4_bin, so LEAST/GREATEST order them like the server does
+INSERT IGNORE INTO `friends_canonical` (username1, username2)
+SELECT LEAST(username1, username2), GREATEST(username1, username2)
+FROM `friends`
+WHERE username1 IS NOT NULL AND username2 IS NOT NULL AND username1 <> username2;
+
+RENAME TABLE `friends` TO `friends_old`, `friends_canonical` TO `friends`;
+
+DROP TRIGGER `friends_migration_insert`;
+DROP TRIGGER `friends_migration_delete`;
+DROP TABLE `friends_old`;
@@ -0,0 +1,14 @@
+-- Second step of friends_canonical.sql, to run once every server writes friendships ordered (username1 < username2).
+-- Friendships the old server version stored reversed are ordered, dropping the ones also stored in order,
+-- and then the CHECK keeps the table ordered.
+USE fit_hub;
+
+-- The columns are utf8mb4_bin, so comparing them orders them like the server does
+INSERT IGNORE INTO `friends` (username1, username2)
+SELECT username2, username1
+FROM `friends`
+WHERE username1 > username2;
+
+DELETE FROM `friends` WHERE username1 >= username2;
+
+ALTER TABLE `friends` ADD CONSTRAINT `chk_friends_ordered` CHECK (`username1` < `username2`);
@@ -2,14 +2,33 @@ package server;
 
 import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
+import server.Controllers.ExerciseController;
+import server.Controllers.MetricsController;
+import server.Controllers.RoutineController;
+import server.Controllers.StaticAssetHandler;
 import server.Controllers.UserController;
+import server.Database.CachingUserRepository;
+import server.Database.ExerciseCatalog;
+import server.Database.ExerciseRepository;
+import server.Database.IdentityMapUserRepository;
+import server.Database.MongoDBConnector;
 import server.Database.MySqlConnector;
+import server.Database.RequestScope;
+import server.Database.RoutineConnector;
+import server.Database.RoutineRepository;
 import server.Database.UserRepository;
+import server.Utils.AdaptiveLimiter;
+import server.Utils.Compression;
 import server.Utils.FriendRequestService;
+import server.Utils.Metrics;
+import server.Utils.PropertiesLoader;
+import server.Utils.RequestExecutor;
+import server.Utils.TokenBucketLimiter;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.sql.SQLException;
+import java.util.Map;
 
 import static server.Utils.LoggerService.log;
 
@@ -17,20 +36,45 @@ public class App {
 
     private static HttpServer server;
     private static HttpContext contextInUse;
+    private static HttpContext exerciseContext;
+    private static HttpContext routineContext;
+    private static RequestExecutor executor;
 
     public static void main( String[] args ) throws IOException, SQLException {
         startServer();
         MySqlConnector userConnector = new MySqlConnector();
-        FriendRequestService.init(userConnector);
+        CachingUserRepository userCache = CachingUserRepository.fromProperties(userConnector);
+        // the controller and the friend request service share the users read by each request
+        UserRepository userRepository = new IdentityMapUserRepository(userCache);
+        FriendRequestService.init(userRepository);
         userConnector.connectDatabase();
-        attachDatabaseManager(userConnector);
+        attachDatabaseManager(userRepository);
+        Metrics.register("userCache", userCache::stats);
+        ExerciseCatalog exerciseCatalog = new ExerciseCatalog(userConnector);
+        Metrics.register("exerciseCatalog", exerciseCatalog::stats);
+        attachExerciseRepository(exerciseCatalog);
+        MongoDBConnector routineConnector = new MongoDBConnector();
+        routineConnector.connectDatabase();
+        attachRoutineRepository(new RoutineConnector(routineConnector, exerciseCatalog));
     }
 
     // Use to make unit test mocking connector
     protected static HttpServer startServer() throws IOException {
+        // Max time to receive a whole request, so slow clients can't hold a request thread forever.
+        // Read by the JDK server when its first instance is created.
+        System.setProperty("sun.net.httpserver.maxReqTime", PropertiesLoader.getProperty("server.request.maxseconds", "10"));
         server = HttpServer.create(new InetSocketAddress(8080), 0);
-        server.setExecutor(null);
-        log("Server started at port 8080...");
+        executor = RequestExecutor.fromProperties();
+        server.setExecutor(executor);
+        server.createContext("/metrics", new MetricsController());
+        server.createContext("/", new StaticAssetHandler());
+        Metrics.register("executor", () -> Map.of("mode", executor.getMode().name(),
+                "pending", executor.getPending(), "rejected", executor.getRejected()));
+        Metrics.register("compression", Compression::stats);
+        Metrics.register("limits", AdaptiveLimiter::stats);
+        Metrics.register("rateLimits", TokenBucketLimiter::stats);
+        Metrics.register("queriesPerRequest", RequestScope::stats);
+        log(String.format("Server started at port 8080 (%s executor)...", executor.getMode().name().toLowerCase()));
         server.start();
         return server;
     }
@@ -41,4 +85,18 @@ public class App {
         }
         contextInUse = server.createContext("/user", new UserController(userConnector));
     }
+
+    protected static void attachExerciseRepository(ExerciseRepository exerciseRepository) {
+        if (exerciseContext != null) {
+            server.removeContext(exerciseContext);
+        }
+        exerciseContext = server.createContext("/exercise", new ExerciseController(exerciseRepository));
+    }
+
+    protected static void attachRoutineRepository(RoutineRepository routineRepository) {
+        if (routineContext != null) {
+            server.removeContext(routineContext);
+        }
+        routineContext = server.createContext("/routine", new RoutineController(routineRepository));
+    }
 }
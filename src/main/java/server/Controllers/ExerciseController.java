@@ -0,0 +1,124 @@
+package server.Controllers;
+
+import com.sun.net.httpserver.HttpExchange;
+import server.Database.ExerciseColumn;
+import server.Database.ExerciseQuery;
+import server.Database.ExerciseRepository;
+import server.Model.Exercise;
+import server.Model.ExercisePage;
+import server.Model.GymExercise;
+import server.Utils.JsonCodec;
+import server.Utils.Utils;
+
+import java.net.HttpURLConnection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class ExerciseController extends GenericHTTPHandler {
+
+    private static final String AFTER_PARAM = "after";
+    private static final String LIMIT_PARAM = "limit";
+    private static final String SEARCH_PARAM = "q";
+    private static final int DEFAULT_SEARCH_RESULTS = 10;
+    private static final int MAX_SEARCH_RESULTS = 50;
+
+    private final ExerciseRepository exerciseRepository;
+
+    static {
+        JsonCodec.prewarm(GymExercise.class);
+    }
+
+    public ExerciseController(ExerciseRepository exerciseRepository) {
+        this.exerciseRepository = exerciseRepository;
+
+        // GET /exercise?[column]=[value]&after=[exercise_name]&limit=[] -> Retrieves a page of exercises ordered by name
+        router.get("/exercise", this::getExercisesEndpoint);
+        // GET /exercise/search?q=[text]&limit=[] -> Retrieves the exercises whose name best matches the text
+        router.get("/exercise/search", this::searchExercisesEndpoint);
+    }
+
+    private void searchExercisesEndpoint(HttpExchange exchange) {
+        Map<String, List<String>> params = parseQueryParamValues(exchange.getRequestURI().getRawQuery());
+        String text = params.getOrDefault(SEARCH_PARAM, List.of("")).getLast();
+        if (text.isBlank()) {
+            respond(exchange, new Object[]{"Missing search text", HttpURLConnection.HTTP_BAD_REQUEST, false});
+            return;
+        }
+        int limit = DEFAULT_SEARCH_RESULTS;
+        if (params.containsKey(LIMIT_PARAM)) {
+            try {
+                limit = Integer.parseInt(params.get(LIMIT_PARAM).getLast());
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+            if (limit < 1 || limit > MAX_SEARCH_RESULTS) {
+                String message = String.format("The limit must be between 1 and %d", MAX_SEARCH_RESULTS);
+                respond(exchange, new Object[]{message, HttpURLConnection.HTTP_BAD_REQUEST, false});
+                return;
+            }
+        }
+
+        List<Exercise> exercises = exerciseRepository.searchExercises(text, limit);
+        Utils.httpJsonStreamResponse(exchange, HttpURLConnection.HTTP_OK, generator -> {
+            generator.writeStartArray();
+            for (Exercise exercise : exercises) {
+                generator.writeObject(exercise);
+            }
+            generator.writeEndArray();
+        });
+    }
+
+    private void getExercisesEndpoint(HttpExchange exchange) {
+        ExerciseQuery query;
+        try {
+            query = parseQuery(parseQueryParamValues(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, new Object[]{e.getMessage(), HttpURLConnection.HTTP_BAD_REQUEST, false});
+            return;
+        }
+
+        // a page is at most MAX_LIMIT exercises, written as they are serialized
+        ExercisePage page = exerciseRepository.findExercises(query);
+        Utils.httpJsonStreamResponse(exchange, HttpURLConnection.HTTP_OK, generator -> {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("exercises");
+            for (Exercise exercise : page.exercises()) {
+                generator.writeObject(exercise);
+            }
+            generator.writeEndArray();
+            if (page.next() != null) {
+                generator.writeStringField("next", page.next());
+            }
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Every parameter other than after and limit is a column of the exercises table, repeated to accept several values
+     * @throws IllegalArgumentException with the message for the client if a parameter is not valid
+     */
+    private static ExerciseQuery parseQuery(Map<String, List<String>> params) {
+        ExerciseQuery.Builder builder = ExerciseQuery.builder();
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            switch (param.getKey()) {
+                case AFTER_PARAM -> builder.after(param.getValue().getLast());
+                case LIMIT_PARAM -> {
+                    try {
+                        builder.limit(Integer.parseInt(param.getValue().getLast()));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("The limit must be a number");
+                    }
+                }
+                default -> {
+                    Optional<ExerciseColumn> column = ExerciseColumn.fromColumn(param.getKey());
+                    if (column.isEmpty()) {
+                        throw new IllegalArgumentException("Unknown filter " + param.getKey());
+                    }
+                    builder.where(column.get(), param.getValue());
+                }
+            }
+        }
+        return builder.build();
+    }
+}
@@ -1,67 +1,68 @@
 package server.Controllers;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
+import server.Utils.JsonCodec;
+import server.Utils.PropertiesLoader;
 import server.Utils.Utils;
 
-import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.net.HttpURLConnection;
-import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 public abstract class GenericHTTPHandler implements HttpHandler {
 
-    public void handle (HttpExchange exchange) throws IOException {
+    private static final int MAX_BODY_BYTES = PropertiesLoader.getIntProperty("server.request.maxbodybytes", 64 * 1024);
+    private static final String CORS_ORIGIN = corsOrigin();
 
-        // ------------ this lines to allow connection from an html on localhost, erase them when using cloud --------------
+    // Subclasses register their endpoints here when they are constructed
+    protected final Router router = new Router();
 
-        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*"); // Permitir solicitudes desde cualquier origen
-        exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE"); // Métodos permitidos
-        exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization"); // Encabezados permitidos
+    public void handle (HttpExchange exchange) throws IOException {
 
-        if ("OPTIONS".equals(exchange.getRequestMethod())) {
-            exchange.sendResponseHeaders(200, -1);
-            return;
+        // The web client is served from this same origin (StaticAssetHandler), so cross-origin requests are only
+        // allowed when server.cors.origin is set, e.g. for a client served by another dev server
+        if (CORS_ORIGIN != null) {
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", CORS_ORIGIN);
+            exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type, Authorization");
+            exchange.getResponseHeaders().set("Access-Control-Max-Age", "86400");
+            if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
         }
 
-        // ------------------------------------------------------------------------------------------------------------------
-
-        switch (exchange.getRequestMethod()) {
-            case "GET": handleGetRequest(exchange); break;
-            case "POST": handlePostRequest(exchange); break;
-            case "PUT": handlePutRequest(exchange); break;
-            case "DELETE": handleDeleteRequest(exchange); break;
-            default:
-                String response = "Method not implemented";
-                Utils.httpResponse(exchange, HttpURLConnection.HTTP_NOT_IMPLEMENTED, false, response);
+        try {
+            router.dispatch(exchange);
+        } catch (RequestBodyException e) {
+            Utils.httpResponse(exchange, e.getHttpStatus(), false, e.getMessage());
         }
     }
 
-    // by default, any mathod is allowed. Override these methods to implement the logic.
-    protected void handleGetRequest(HttpExchange exchange) throws IOException {
-        String response = "Method not allowed";
-        Utils.httpResponse(exchange, HttpURLConnection.HTTP_BAD_METHOD, false, response);
+    private static String corsOrigin() {
+        String origin = PropertiesLoader.getProperty("server.cors.origin", "");
+        return origin.isBlank() ? null : origin.trim();
     }
 
-    protected void handlePostRequest(HttpExchange exchange) throws IOException {
-        String response = "Method not allowed";
-        Utils.httpResponse(exchange, HttpURLConnection.HTTP_BAD_METHOD, false, response);
-    }
-
-    protected void handlePutRequest(HttpExchange exchange) throws IOException {
-        String response = "Method not allowed";
-        Utils.httpResponse(exchange, HttpURLConnection.HTTP_BAD_METHOD, false, response);
-    }
-
-    protected void handleDeleteRequest(HttpExchange exchange) throws IOException {
-        String response = "Method not allowed";
-        Utils.httpResponse(exchange, HttpURLConnection.HTTP_BAD_METHOD, false, response);;
+    /**
+     * Sends the result of an endpoint, given as {response, httpStatus, isJson}
+     */
+    protected static void respond(HttpExchange exchange, Object[] res) {
+        String response = (String) res[0];
+        int httpStatus = (int) res[1];
+        boolean isJson = (boolean) res[2];
+        Utils.httpResponse(exchange, httpStatus, isJson, response);
     }
 
     /**
@@ -86,40 +87,99 @@ public abstract class GenericHTTPHandler implements HttpHandler {
     }
 
     /**
-     * This method to extract as a Map of Strings the json body of a request
+     * Same as parseQueryParams, keeping every value of repeated parameters (?muscle_group=Chest&muscle_group=Back)
+     * and decoding them, so values can have spaces or commas
+     * @return Map containing the values of each parameter in the order they appear
+     */
+    protected Map<String, List<String>> parseQueryParamValues(String query) {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        if (query != null && !query.isEmpty()) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                String key = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+                String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+                params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+            }
+        }
+        return params;
+    }
+
+    /**
+     * This method to extract the json body of a request as an object of the given type.
+     * The body is parsed straight from the request stream and can't be bigger than server.request.maxbodybytes.
      * @param exchange representing the http request
-     * @return Map of Strings representing the json body
+     * @param type class the body is mapped to
+     * @return object representing the json body
+     * @throws RequestBodyException if the body is missing (400), too large (413), not valid json or not of the type (400)
      * @throws IOException
      */
-    protected Map<String, String> extractJsonBody(HttpExchange exchange) throws IOException {
-        InputStream inputStream = exchange.getRequestBody();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        StringBuilder body = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            body.append(line);
+    protected <T> T extractJsonBody(HttpExchange exchange, Class<T> type) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (contentLength != null) {
+            long length;
+            try {
+                length = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new RequestBodyException(HttpURLConnection.HTTP_BAD_REQUEST, "Invalid Content-Length");
+            }
+            if (length > MAX_BODY_BYTES) {
+                throw new RequestBodyException(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, "Request body too large");
+            }
+            if (length == 0) {
+                throw new RequestBodyException(HttpURLConnection.HTTP_BAD_REQUEST, "Missing request body");
+            }
         }
 
-        reader.close();
-        inputStream.close();
+        // a chunked body has no Content-Length, so the limit and an empty body are also checked while reading
+        try (PushbackInputStream inputStream = new PushbackInputStream(new LimitedInputStream(exchange.getRequestBody(), MAX_BODY_BYTES))) {
+            int first = inputStream.read();
+            if (first < 0) {
+                throw new RequestBodyException(HttpURLConnection.HTTP_BAD_REQUEST, "Missing request body");
+            }
+            inputStream.unread(first);
+            return JsonCodec.readerFor(type).readValue(inputStream);
+        } catch (BodyTooLargeException e) {
+            throw new RequestBodyException(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, "Request body too large");
+        } catch (JsonProcessingException e) {
+            if (e.getCause() instanceof BodyTooLargeException) {
+                throw new RequestBodyException(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, "Request body too large");
+            }
+            // not json, data after the json value or json that doesn't fit the type
+            throw new RequestBodyException(HttpURLConnection.HTTP_BAD_REQUEST, "Malformed json body");
+        }
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        return objectMapper.readValue(body.toString(), Map.class);
+    // an IOException, so Jackson lets it through instead of wrapping it like the runtime exceptions of the stream
+    private static class BodyTooLargeException extends IOException {
     }
 
-    /**
-     * Returns the next segment from a http path. eg: (user/manage/create/training, 1) -> "manage"
-     * @param uri
-     * @param index
-     * @return
-     */
-    protected static Optional<String> getNextSegment(URI uri, int index) {
-        String path = uri.getPath();
-        String[] segments = path.split("/");
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) consume(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) consume(read);
+            return read;
+        }
 
-        if (index + 1 < segments.length) {
-            return Optional.of(segments[index + 1]);
+        private void consume(int bytes) throws BodyTooLargeException {
+            remaining -= bytes;
+            if (remaining < 0) {
+                throw new BodyTooLargeException();
+            }
         }
-        return Optional.empty();
     }
 }
@@ -0,0 +1,15 @@
+package server.Controllers;
+
+import server.Utils.Metrics;
+import server.Utils.Utils;
+
+import java.net.HttpURLConnection;
+
+public class MetricsController extends GenericHTTPHandler {
+
+    public MetricsController() {
+        // GET /metrics -> Retrieves the counters of the server
+        router.get("/metrics", exchange -> Utils.httpJsonStreamResponse(exchange, HttpURLConnection.HTTP_OK,
+                generator -> generator.writeObject(Metrics.snapshot())));
+    }
+}
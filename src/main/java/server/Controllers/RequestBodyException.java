@@ -0,0 +1,19 @@
+package server.Controllers;
+
+/**
+ * Thrown while reading a request body that can't be accepted (too large, malformed...).
+ * It is answered by {@link GenericHTTPHandler} with the given http status and the exception message.
+ */
+public class RequestBodyException extends RuntimeException {
+
+    private final int httpStatus;
+
+    public RequestBodyException(int httpStatus, String message) {
+        super(message);
+        this.httpStatus = httpStatus;
+    }
+
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+}
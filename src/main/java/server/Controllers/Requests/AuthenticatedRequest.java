@@ -0,0 +1,20 @@
+package server.Controllers.Requests;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Body of the requests that need a session token
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AuthenticatedRequest {
+
+    @JsonProperty("session_token")
+    private String sessionToken;
+}
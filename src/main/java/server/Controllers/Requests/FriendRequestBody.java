@@ -0,0 +1,20 @@
+package server.Controllers.Requests;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Body of the /user/friend and /user/friend_request endpoints.
+ * 'requested' is used when the token belongs to the requester and 'requester' when it belongs to the requested user.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FriendRequestBody extends AuthenticatedRequest {
+
+    private String requested;
+    private String requester;
+}
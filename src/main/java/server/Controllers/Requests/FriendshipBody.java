@@ -0,0 +1,15 @@
+package server.Controllers.Requests;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FriendshipBody extends AuthenticatedRequest {
+
+    private String friend;
+}
@@ -0,0 +1,178 @@
+package server.Controllers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import server.Database.RequestScope;
+import server.Utils.AdaptiveLimiter;
+import server.Utils.Utils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Route table of a controller. Routes are registered once as (method, path pattern) -> handler and stored
+ * in a trie with one node per path segment, so dispatching a request walks the path only once.
+ * A segment written as {name} matches any value, which can be read with {@link #pathParam}.
+ * Literal segments take precedence over parameters. Unknown paths answer 404 and known paths
+ * with an unregistered method answer 405.
+ * Every route has its own {@link AdaptiveLimiter}: when it is full the request answers 503 with Retry-After
+ * instead of waiting, so a slow database doesn't pile up requests on the server.
+ * Every request runs in a {@link RequestScope}, which also counts its queries by route.
+ */
+public class Router {
+
+    private static final String PATH_PARAMS_ATTRIBUTE = "router.pathParams";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final Node root = new Node("");
+
+    public Router get(String pattern, HttpHandler handler) {
+        return register("GET", pattern, handler);
+    }
+
+    public Router post(String pattern, HttpHandler handler) {
+        return register("POST", pattern, handler);
+    }
+
+    public Router put(String pattern, HttpHandler handler) {
+        return register("PUT", pattern, handler);
+    }
+
+    public Router delete(String pattern, HttpHandler handler) {
+        return register("DELETE", pattern, handler);
+    }
+
+    public Router register(String method, String pattern, HttpHandler handler) {
+        Node node = root;
+        for (String segment : pattern.split("/")) {
+            if (segment.isEmpty()) continue;
+            node = node.child(segment);
+        }
+        if (node.handlers.containsKey(method)) {
+            throw new IllegalStateException(String.format("Route %s %s registered twice", method, pattern));
+        }
+        String name = method + " " + normalize(pattern);
+        node.handlers.put(method, new Route(name, handler, AdaptiveLimiter.forRoute(name)));
+        node.allow = String.join(", ", node.handlers.keySet().stream().sorted().toList());
+        return this;
+    }
+
+    public void dispatch(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Node node = root;
+        Map<String, String> params = null;
+        int length = path.length();
+        int start = 0;
+
+        while (node != null && start < length) {
+            if (path.charAt(start) == '/') { // skip empty segments, e.g. "/user/" == "/user"
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) end = length;
+
+            Node next = node.literal(path, start, end - start);
+            if (next == null && node.param != null) {
+                next = node.param;
+                if (params == null) params = new HashMap<>(4);
+                params.put(next.paramName, path.substring(start, end));
+            }
+            node = next;
+            start = end;
+        }
+
+        if (node == null || node.handlers.isEmpty()) {
+            Utils.httpResponse(exchange, HttpURLConnection.HTTP_NOT_FOUND, false, "Unrecognized endpoint");
+            return;
+        }
+
+        Route route = node.handlers.get(exchange.getRequestMethod());
+        if (route == null) {
+            exchange.getResponseHeaders().set("Allow", node.allow);
+            Utils.httpResponse(exchange, HttpURLConnection.HTTP_BAD_METHOD, false, "Method not allowed");
+            return;
+        }
+        if (params != null) {
+            exchange.setAttribute(PATH_PARAMS_ATTRIBUTE, params);
+        }
+        if (!route.limiter.tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+            Utils.httpResponse(exchange, HttpURLConnection.HTTP_UNAVAILABLE, false, "Server overloaded, try again later");
+            return;
+        }
+        long startNanos = System.nanoTime();
+        boolean success = false;
+        try (RequestScope ignored = RequestScope.open(route.name)) {
+            route.handler.handle(exchange);
+            success = exchange.getResponseCode() < HttpURLConnection.HTTP_INTERNAL_ERROR;
+        } finally {
+            route.limiter.release(System.nanoTime() - startNanos, success);
+        }
+    }
+
+    private static String normalize(String pattern) {
+        StringBuilder path = new StringBuilder();
+        for (String segment : pattern.split("/")) {
+            if (!segment.isEmpty()) path.append('/').append(segment);
+        }
+        return path.isEmpty() ? "/" : path.toString();
+    }
+
+    /**
+     * Returns the value of a {name} segment of the route that matched the exchange, null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public static String pathParam(HttpExchange exchange, String name) {
+        Map<String, String> params = (Map<String, String>) exchange.getAttribute(PATH_PARAMS_ATTRIBUTE);
+        return params == null ? null : params.get(name);
+    }
+
+    private record Route(String name, HttpHandler handler, AdaptiveLimiter limiter) {
+    }
+
+    private static class Node {
+        private final String segment;
+        private final String paramName;
+        private Node[] literals = new Node[0];
+        private Node param;
+        private final Map<String, Route> handlers = new HashMap<>(4);
+        private String allow = "";
+
+        private Node(String segment) {
+            this.segment = segment;
+            this.paramName = segment.startsWith("{") && segment.endsWith("}") ? segment.substring(1, segment.length() - 1) : null;
+        }
+
+        private Node child(String segment) {
+            Node node = new Node(segment);
+            if (node.paramName != null) {
+                if (param == null) {
+                    param = node;
+                } else if (!param.paramName.equals(node.paramName)) {
+                    throw new IllegalStateException(String.format("Conflicting path parameters {%s} and {%s}", param.paramName, node.paramName));
+                }
+                return param;
+            }
+            for (Node literal : literals) {
+                if (literal.segment.equals(segment)) return literal;
+            }
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literals[literals.length - 1] = node;
+            return node;
+        }
+
+        // compares in place against the request path, so no substring is created for literal segments
+        private Node literal(String path, int offset, int length) {
+            for (Node literal : literals) {
+                if (literal.segment.length() == length && path.regionMatches(offset, literal.segment, 0, length)) {
+                    return literal;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package server.Controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import server.Database.RoutineQuery;
+import server.Database.RoutineRepository;
+import server.Model.Routine;
+import server.Utils.JsonCodec;
+import server.Utils.LoggerService;
+import server.Utils.Utils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public class RoutineController extends GenericHTTPHandler {
+
+    private static final String OWNER_PARAM = "owner";
+    private static final String AFTER_PARAM = "after";
+    private static final String LIMIT_PARAM = "limit";
+    private static final String FIELDS_PARAM = "fields";
+
+    private final RoutineRepository routineRepository;
+
+    static {
+        JsonCodec.prewarm(Routine.class);
+    }
+
+    public RoutineController(RoutineRepository routineRepository) {
+        this.routineRepository = routineRepository;
+
+        // GET /routine?owner=[username]&after=[id]&limit=[]&fields=[routineName,owner,exerciseSets] -> Streams the routines ordered by id
+        router.get("/routine", this::getRoutinesEndpoint);
+    }
+
+    private void getRoutinesEndpoint(HttpExchange exchange) {
+        RoutineQuery query;
+        try {
+            query = parseQuery(parseQueryParamValues(exchange.getRequestURI().getRawQuery()));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, new Object[]{e.getMessage(), HttpURLConnection.HTTP_BAD_REQUEST, false});
+            return;
+        }
+
+        Stream<Routine> routines;
+        try {
+            routines = routineRepository.streamRoutines(query);
+        } catch (RuntimeException e) {
+            LoggerService.logerror("Error while reading routines: " + e.getMessage());
+            respond(exchange, new Object[]{"Internal error", HttpURLConnection.HTTP_INTERNAL_ERROR, false});
+            return;
+        }
+
+        // each routine is written as it is read from the cursor, so the response can be as big as the collection.
+        // If the cursor fails midway the response is a 500 or, once its first bytes are sent, cut before its end
+        try (routines) {
+            Utils.httpJsonStreamResponse(exchange, HttpURLConnection.HTTP_OK, generator -> {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("routines");
+                int count = 0;
+                Integer last = null;
+                for (Iterator<Routine> iterator = routines.iterator(); iterator.hasNext(); ) {
+                    Routine routine = iterator.next();
+                    writeRoutine(generator, routine, query);
+                    last = routine.getId();
+                    count++;
+                }
+                generator.writeEndArray();
+                // a full page may be the last one, then the next one is empty
+                if (query.getLimit() != RoutineQuery.NO_LIMIT && count == query.getLimit()) {
+                    generator.writeNumberField("next", last);
+                }
+                generator.writeEndObject();
+            });
+        }
+    }
+
+    private static void writeRoutine(JsonGenerator generator, Routine routine, RoutineQuery query) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", routine.getId());
+        if (query.includes(RoutineQuery.Field.ROUTINE_NAME)) {
+            generator.writeStringField(RoutineQuery.Field.ROUTINE_NAME.getName(), routine.getRoutineName());
+        }
+        if (query.includes(RoutineQuery.Field.OWNER)) {
+            generator.writeStringField(RoutineQuery.Field.OWNER.getName(), routine.getOwner());
+        }
+        if (query.includes(RoutineQuery.Field.EXERCISE_SETS)) {
+            generator.writeObjectField(RoutineQuery.Field.EXERCISE_SETS.getName(), routine.getExerciseSets());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * fields is a list separated by commas, or repeated
+     * @throws IllegalArgumentException with the message for the client if a parameter is not valid
+     */
+    private static RoutineQuery parseQuery(Map<String, List<String>> params) {
+        RoutineQuery.Builder builder = RoutineQuery.builder();
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            String value = param.getValue().getLast();
+            switch (param.getKey()) {
+                case OWNER_PARAM -> builder.owner(value);
+                case AFTER_PARAM -> builder.after(parseNumber(value, "The id to start after must be a number"));
+                case LIMIT_PARAM -> builder.limit(parseNumber(value, "The limit must be a number"));
+                case FIELDS_PARAM -> {
+                    List<RoutineQuery.Field> fields = new ArrayList<>();
+                    for (String values : param.getValue()) {
+                        for (String name : values.split(",")) {
+                            Optional<RoutineQuery.Field> field = RoutineQuery.Field.fromName(name.trim());
+                            if (field.isEmpty()) {
+                                throw new IllegalArgumentException("Unknown field " + name.trim());
+                            }
+                            fields.add(field.get());
+                        }
+                    }
+                    builder.fields(fields);
+                }
+                default -> throw new IllegalArgumentException("Unknown parameter " + param.getKey());
+            }
+        }
+        return builder.build();
+    }
+
+    private static int parseNumber(String value, String message) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
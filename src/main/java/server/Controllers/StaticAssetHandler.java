@@ -0,0 +1,187 @@
+package server.Controllers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import server.Utils.Compression;
+import server.Utils.LoggerService;
+import server.Utils.ResourceVersions;
+import server.Utils.Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the web client (templates, logic and styles of the resources) from the same origin as the api.
+ * Every file is read and gzipped once when the handler is created, requests only choose the variant to send.
+ * Scripts and styles are referenced from the pages with ?v=[content hash], so they can be cached for a year;
+ * pages are always revalidated with their ETag, which costs a 304 without body when nothing changed.
+ */
+public class StaticAssetHandler implements HttpHandler {
+
+    // classpath directory -> url prefix
+    private static final Map<String, String> DIRECTORIES = Map.of(
+            "templates", "/",
+            "logic", "/logic/",
+            "styles", "/styles/");
+    private static final String INDEX = "/login.html";
+    private static final String PAGE_CACHE_CONTROL = "no-cache";
+    private static final String ASSET_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html; charset=utf-8",
+            "js", "text/javascript; charset=utf-8",
+            "css", "text/css; charset=utf-8");
+
+    private final Map<String, Asset> assets;
+
+    private record Asset(byte[] body, byte[] gzipped, String etag, String contentType, String cacheControl) {
+    }
+
+    public StaticAssetHandler() {
+        this.assets = load();
+        LoggerService.log(String.format("Loaded %d static assets", assets.size()));
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            Utils.httpResponse(exchange, HttpURLConnection.HTTP_BAD_METHOD, false, "Method not allowed");
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        Asset asset = assets.get(path.equals("/") ? INDEX : path);
+        if (asset == null) {
+            Utils.httpResponse(exchange, HttpURLConnection.HTTP_NOT_FOUND, false, "Unrecognized endpoint");
+            return;
+        }
+
+        boolean gzip = asset.gzipped() != null && Compression.negotiate(exchange) == Compression.Encoding.GZIP;
+        // each encoding is a different representation, so it needs its own strong ETag
+        String etag = gzip ? asset.etag().replaceFirst("\"$", "-gz\"") : asset.etag();
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        exchange.getResponseHeaders().set("Cache-Control", asset.cacheControl());
+        if (ResourceVersions.matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            Utils.httpNotModified(exchange, etag);
+            return;
+        }
+
+        byte[] body = gzip ? asset.gzipped() : asset.body();
+        exchange.getResponseHeaders().set("Content-Type", asset.contentType());
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        if (method.equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static Map<String, Asset> load() {
+        Map<String, byte[]> files = new HashMap<>();
+        DIRECTORIES.forEach((directory, prefix) -> readDirectory(directory, prefix, files));
+
+        Map<String, Asset> loaded = new HashMap<>();
+        Map<String, String> versionedUrls = new HashMap<>();
+        files.forEach((url, content) -> {
+            if (!url.endsWith(".html")) {
+                Asset asset = asset(url, content, ASSET_CACHE_CONTROL);
+                loaded.put(url, asset);
+                versionedUrls.put(url, url + "?v=" + asset.etag().substring(1, asset.etag().length() - 1));
+            }
+        });
+        files.forEach((url, content) -> {
+            if (url.endsWith(".html")) {
+                String page = new String(content, StandardCharsets.UTF_8);
+                for (Map.Entry<String, String> versioned : versionedUrls.entrySet()) {
+                    page = page.replace("\"" + versioned.getKey() + "\"", "\"" + versioned.getValue() + "\"");
+                }
+                loaded.put(url, asset(url, page.getBytes(StandardCharsets.UTF_8), PAGE_CACHE_CONTROL));
+            }
+        });
+        return Map.copyOf(loaded);
+    }
+
+    private static void readDirectory(String directory, String prefix, Map<String, byte[]> files) {
+        URL url = StaticAssetHandler.class.getClassLoader().getResource(directory);
+        if (url == null) {
+            LoggerService.logerror(String.format("Static directory %s not found in the classpath", directory));
+            return;
+        }
+        try {
+            URI uri = url.toURI();
+            if (uri.getScheme().equals("jar")) {
+                try (FileSystem jar = FileSystems.newFileSystem(uri, Map.of())) {
+                    readFiles(jar.getPath(directory), prefix, files);
+                }
+            } else {
+                readFiles(Path.of(uri), prefix, files);
+            }
+        } catch (IOException | URISyntaxException e) {
+            LoggerService.logerror(String.format("Error loading static directory %s: %s", directory, e.getMessage()));
+        }
+    }
+
+    private static void readFiles(Path root, String prefix, Map<String, byte[]> files) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path path : paths) {
+            String relative = root.relativize(path).toString().replace('\\', '/');
+            files.put(prefix + relative, Files.readAllBytes(path));
+        }
+    }
+
+    private static Asset asset(String url, byte[] body, String cacheControl) {
+        String extension = url.substring(url.lastIndexOf('.') + 1);
+        String contentType = CONTENT_TYPES.getOrDefault(extension, "application/octet-stream");
+        byte[] gzipped = gzip(body);
+        return new Asset(body, gzipped.length < body.length ? gzipped : null, etag(body), contentType, cacheControl);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 3 + 32);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in memory, can't happen
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is always available
+        }
+    }
+}
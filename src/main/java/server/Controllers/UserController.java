@@ -2,24 +2,37 @@ package server.Controllers;
 
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DatabindException;
 import com.sun.net.httpserver.HttpExchange;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import server.Controllers.Requests.FriendRequestBody;
+import server.Controllers.Requests.FriendshipBody;
+import server.Controllers.Requests.LoginBody;
 import server.Database.UserRepository;
 import server.Model.FriendRequest;
+import server.Model.FriendRequestSummary;
 import server.Model.User;
 import server.Utils.FriendRequestService;
+import server.Utils.JsonCodec;
 import server.Utils.LoggerService;
+import server.Utils.ResourceVersions;
+import server.Utils.TokenBucketLimiter;
 import server.Utils.UserTokenService;
 import server.Utils.Utils;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.Calendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 public class UserController extends GenericHTTPHandler {
 
@@ -30,108 +43,85 @@ public class UserController extends GenericHTTPHandler {
     private static final int MAX_USERNAME_LENGTH = 30;
     private static final int MIN_PASSWORD_LENGHT = 8;
     private static final String BODY_TOKEN_KEY = "session_token";
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final TypeReference<List<Map<String, Object>>> REQUEST_LIST_TYPE = new TypeReference<>() {};
+    private static final TypeReference<Set<User>> USER_SET_TYPE = new TypeReference<>() {};
+
+    // login and registration hash with BCrypt, so both are limited before reaching it
+    private static final TokenBucketLimiter addressLimiter = TokenBucketLimiter.fromProperties("address", 20, 5);
+    private static final TokenBucketLimiter usernameLimiter = TokenBucketLimiter.fromProperties("username", 10, 1);
+
+    static {
+        JsonCodec.prewarm(User.class, LoginBody.class, FriendRequestBody.class, FriendshipBody.class);
+        JsonCodec.writerFor(REQUEST_LIST_TYPE);
+        JsonCodec.writerFor(USER_SET_TYPE);
+    }
 
     public UserController(UserRepository userRepository) {
         this.userRepository = userRepository;
-    }
-
-    // GET /user
-    protected void handleGetRequest(HttpExchange exchange) {
-        Map<String, String> params = parseQueryParams(exchange.getRequestURI().getQuery());
-        Optional<String> nextSegment = getNextSegment(exchange.getRequestURI(), 1);
-        Object[] res;
 
-        if (nextSegment.isEmpty()) {
-            //1. /user?username=[] -> Retrieves a single user by the username
+        // GET /user?username=[] -> Retrieves a single user by the username
+        // GET /user -> Retrieves list of all users
+        router.get("/user", exchange -> {
+            Map<String, String> params = parseQueryParams(exchange.getRequestURI().getQuery());
             if (params.containsKey("username")) {
-                res = getUserByUsernameEndpoint(params);
-            }
-
-            //2. /user -> Retrieves list of all users
-            else {
-                res = getAllUsersEndpoint();
+                conditionalGet(exchange, ResourceVersions.user(params.get("username")), () -> getUserByUsernameEndpoint(params));
+            } else {
+                streamAllUsersEndpoint(exchange);
             }
-        }
-        // 3. /user/outgoing -> Retrieves list of outgoing requests
-        else if (nextSegment.get().equals("outgoing")) {
-            res = getOutgoingRequests(params);
-
-            // 4. /user/incoming -> Retrieves list of incoming requests
-        } else if (nextSegment.get().equals("incoming")) {
-            res = getIncomingRequests(params);
-
-            // 5. /user/friends -> Retrieves list of friends
-        } else if (nextSegment.get().equals("friends")) {
-            res = getUserFriends(params);
-
-        } else {
-            res = new Object[]{"Unrecognized endpoint", HttpURLConnection.HTTP_BAD_REQUEST, false};
-        }
-
-        String response = (String) res[0];
-        int httpStatus = (int) res[1];
-        boolean isJson = (boolean) res[2];
-        Utils.httpResponse(exchange, httpStatus, isJson, response);
+        });
+        // GET /user/outgoing -> Retrieves list of outgoing requests
+        router.get("/user/outgoing", exchange -> authenticatedConditionalGet(exchange, ResourceVersions::outgoingRequests, this::getOutgoingRequests));
+        // GET /user/incoming -> Retrieves list of incoming requests
+        router.get("/user/incoming", exchange -> authenticatedConditionalGet(exchange, ResourceVersions::incomingRequests, this::getIncomingRequests));
+        // GET /user/friends -> Retrieves list of friends
+        router.get("/user/friends", exchange -> authenticatedConditionalGet(exchange, ResourceVersions::friends, this::getUserFriends));
+
+        // POST /user -> Creates a new user
+        router.post("/user", exchange -> respond(exchange, createUserEndpoint(exchange)));
+        // POST /user/login -> Validates credentials and generates token
+        router.post("/user/login", exchange -> respond(exchange, loginEndpoint(exchange)));
+        // POST /user/friend -> Creates a friend request to requestedUsername
+        router.post("/user/friend", exchange -> respond(exchange, createFriendRequest(exchange)));
+        // POST /user/friend/accept -> Accepts a friend request
+        router.post("/user/friend/accept", exchange -> respond(exchange, acceptFriendRequest(exchange)));
+        // POST /user/friend/reject -> Rejects a friend request
+        router.post("/user/friend/reject", exchange -> respond(exchange, rejectFriendRequest(exchange)));
+
+        // DELETE /user/friend_request -> Deletes an existent friend request to requestedUsername
+        router.delete("/user/friend_request", exchange -> respond(exchange, deleteFriendRequest(exchange)));
+        // DELETE /user/friend -> Deletes a friendship between 2 users
+        router.delete("/user/friend", exchange -> respond(exchange, deleteFriendship(exchange)));
     }
 
-    // POST /user
-    protected void handlePostRequest(HttpExchange exchange) {
-        Optional<String> nextSegment = getNextSegment(exchange.getRequestURI(), 1);
-        Optional<String> secondSegment = getNextSegment(exchange.getRequestURI(), 2);
-        Object[] res;
-
-        // /user -> Creates a new user
-        if (nextSegment.isEmpty()) {
-            res = createUserEndpoint(exchange);
-        }
-
-        // /user/login -> Validates credentials and generates token
-        else if (nextSegment.isPresent() && nextSegment.get().equals("login")) {
-            res = loginEndpoint(exchange);
-        }
-
-        // /user/friend -> Creates a friend request to requestedUsername
-        else if (nextSegment.isPresent() && nextSegment.get().equals("friend") && secondSegment.isEmpty()) {
-            res = createFriendRequest(exchange);
+    /**
+     * Answers 304 if the If-None-Match header of the request has the current version of the resource,
+     * without calling the endpoint. Otherwise, calls the endpoint and adds the ETag to successful responses.
+     * The version is read before the endpoint, so a write happening meanwhile only causes an extra refresh.
+     */
+    private void conditionalGet(HttpExchange exchange, String resource, Supplier<Object[]> endpoint) {
+        String etag = ResourceVersions.etag(resource);
+        if (ResourceVersions.matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+            Utils.httpNotModified(exchange, etag);
+            return;
         }
-
-        // /user/friend/accept -> Accepts a friend request
-        else if (nextSegment.isPresent() && nextSegment.get().equals("friend") && secondSegment.isPresent() && secondSegment.get().equals("accept")) {
-            res = acceptFriendRequest(exchange);
+        Object[] res = endpoint.get();
+        if ((int) res[1] == HttpURLConnection.HTTP_OK) {
+            exchange.getResponseHeaders().set("ETag", etag);
         }
-
-        // /user/friend/reject -> Rejects a friend request
-        else if (nextSegment.isPresent() && nextSegment.get().equals("friend") && secondSegment.isPresent() && secondSegment.get().equals("reject")) {
-            res = rejectFriendRequest(exchange);
-        } else {
-            res = new Object[]{"Unrecognized endpoint", HttpURLConnection.HTTP_BAD_REQUEST, false};
-        }
-
-        String response = (String) res[0];
-        int httpStatus = (int) res[1];
-        boolean isJson = (boolean) res[2];
-        Utils.httpResponse(exchange, httpStatus, isJson, response);
+        respond(exchange, res);
     }
 
-    protected void handleDeleteRequest(HttpExchange exchange) {
-        Optional<String> nextSegment = getNextSegment(exchange.getRequestURI(), 1);
-        Object[] res;
-
-        // /user/friend_request -> Deletes an existent friend request to requestedUsername
-        if (nextSegment.isPresent() && nextSegment.get().equals("friend_request")) {
-            res = deleteFriendRequest(exchange);
-
-            // /user/friend -> Deletes a friendship between 2 users
-        } else if (nextSegment.isPresent() && nextSegment.get().equals("friend")) {
-            res = deleteFriendship(exchange);
+    // Same as conditionalGet, for the resources of the user owning the session token of the query string
+    private void authenticatedConditionalGet(HttpExchange exchange, Function<String, String> resource,
+                                             Function<Map<String, String>, Object[]> endpoint) {
+        Map<String, String> params = parseQueryParams(exchange.getRequestURI().getQuery());
+        Optional<String> username = requiresToken(params);
+        if (username.isPresent()) {
+            conditionalGet(exchange, resource.apply(username.get()), () -> endpoint.apply(params));
         } else {
-            res = new Object[]{"Unrecognized endpoint", HttpURLConnection.HTTP_BAD_REQUEST};
+            respond(exchange, endpoint.apply(params));
         }
-
-        String response = (String) res[0];
-        int httpStatus = (int) res[1];
-        boolean isJson = (boolean) res[2];
-        Utils.httpResponse(exchange, httpStatus, isJson, response);
     }
 
     private Object[] deleteFriendship(HttpExchange exchange) {
@@ -139,17 +129,16 @@ public class UserController extends GenericHTTPHandler {
         int httpStatus;
         boolean isJson;
 
-        Map<String, String> body = null;
         try {
-            body = extractJsonBody(exchange);
-            Optional<String> userOptional = requiresToken(body);
+            FriendshipBody body = extractJsonBody(exchange, FriendshipBody.class);
+            Optional<String> userOptional = requiresToken(body.getSessionToken());
             if (userOptional.isEmpty()) {
                 response = "Token not valid or not present";
                 httpStatus = HttpURLConnection.HTTP_UNAUTHORIZED;
                 isJson = false;
             } else {
                 String username = userOptional.get();
-                String friendUsername = body.get("friend");
+                String friendUsername = body.getFriend();
                 if (friendUsername == null) {
                     response = "Missing attribute: friend";
                     httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
@@ -160,8 +149,7 @@ public class UserController extends GenericHTTPHandler {
                     if (user.isPresent() && friend.isPresent()) {
                         User userObject = user.get();
                         User friendObject = friend.get();
-                        if (userObject.getFriends().stream().anyMatch(userFriend ->
-                                userFriend.getUsername().equals(friendUsername))) {
+                        if (userObject.getFriendUsernames().contains(friendUsername)) {
                             userRepository.deleteFriend(new FriendRequest(userObject, friendObject, null));
                             response = "Friendship has been removed successfully";
                             httpStatus = HttpURLConnection.HTTP_OK;
@@ -179,7 +167,10 @@ public class UserController extends GenericHTTPHandler {
                 }
             }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            response = "Internal error";
+            httpStatus = HttpURLConnection.HTTP_INTERNAL_ERROR;
+            isJson = false;
+            LoggerService.logerror("Internal error while obtaining http body from request.");
         }
         return new Object[]{response, httpStatus, isJson};
     }
@@ -198,11 +189,10 @@ public class UserController extends GenericHTTPHandler {
                 String requested = requiresToken(params).get();
                 Optional<User> optionalRequested = userRepository.findByUsername(requested);
                 if (optionalRequested.isPresent()) {
-                    User userRequested = optionalRequested.get();
-                    Set<FriendRequest> requests = userRepository.findFriendRequestsByRequested(userRequested);
-                    response = new ObjectMapper().writeValueAsString(requests.stream().map(request -> {
-                        return Map.of("requester", request.getRequester().getUsername(),
-                                "date", request.getDate());
+                    List<FriendRequestSummary> requests = userRepository.findIncomingRequestSummaries(requested);
+                    response = JsonCodec.writerFor(REQUEST_LIST_TYPE).writeValueAsString(requests.stream().map(request -> {
+                        return Map.<String, Object>of("requester", request.username(),
+                                "date", request.date());
                     }).toList());
                     httpStatus = HttpURLConnection.HTTP_OK;
                     isJson = true;
@@ -236,11 +226,10 @@ public class UserController extends GenericHTTPHandler {
                 Optional<User> optionalRequester = userRepository.findByUsername(requester);
                 if (optionalRequester.isPresent()) {
                     // 3. Buscar solicitudes enviadas por este usuario
-                    User userRequester = optionalRequester.get();
-                    Set<FriendRequest> requests = userRepository.findFriendRequestsByRequester(userRequester);
+                    List<FriendRequestSummary> requests = userRepository.findOutgoingRequestSummaries(requester);
 
-                    response = new ObjectMapper().writeValueAsString(requests.stream().map(request -> Map.of("requested", request.getRequested().getUsername(),
-                            "date", request.getDate())).toList());
+                    response = JsonCodec.writerFor(REQUEST_LIST_TYPE).writeValueAsString(requests.stream().map(request -> Map.<String, Object>of("requested", request.username(),
+                            "date", request.date())).toList());
 
                     httpStatus = HttpURLConnection.HTTP_OK;
                     isJson = true;
@@ -277,7 +266,7 @@ public class UserController extends GenericHTTPHandler {
                 if (optionalUser.isPresent()) {
                     User user = optionalUser.get();
                     Set<User> friends = user.getFriends();
-                    response = new ObjectMapper().writeValueAsString(friends);
+                    response = JsonCodec.writerFor(USER_SET_TYPE).writeValueAsString(friends);
                     httpStatus = HttpURLConnection.HTTP_OK;
                     isJson = true;
                 } else {
@@ -302,15 +291,15 @@ public class UserController extends GenericHTTPHandler {
         boolean isJson;
 
         try {
-            Map<String, String> body = extractJsonBody(exchange);
-            Optional<String> requesterOptional = requiresToken(body);
+            FriendRequestBody body = extractJsonBody(exchange, FriendRequestBody.class);
+            Optional<String> requesterOptional = requiresToken(body.getSessionToken());
             if (requesterOptional.isEmpty()) {
                 response = "Token not valid or not present";
                 httpStatus = HttpURLConnection.HTTP_UNAUTHORIZED;
                 isJson = false;
             } else {
                 String requester = requesterOptional.get();
-                String requested = body.get("requested");
+                String requested = body.getRequested();
                 if (requested == null) {
                     response = "Missing attribute: requested";
                     httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
@@ -350,15 +339,15 @@ public class UserController extends GenericHTTPHandler {
         int httpStatus;
         boolean isJson;
         try {
-            Map<String, String> body = extractJsonBody(exchange);
-            Optional<String> requesterOptional = requiresToken(body);
+            FriendRequestBody body = extractJsonBody(exchange, FriendRequestBody.class);
+            Optional<String> requesterOptional = requiresToken(body.getSessionToken());
             if (requesterOptional.isEmpty()) {
                 response = "Token not valid or not present";
                 httpStatus = HttpURLConnection.HTTP_UNAUTHORIZED;
                 isJson = false;
             } else {
                 String requester = requesterOptional.get();
-                String requested = body.get("requested");
+                String requested = body.getRequested();
                 if (requested == null) {
                     response = "Missing attribute: requested";
                     httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
@@ -403,15 +392,15 @@ public class UserController extends GenericHTTPHandler {
         int httpStatus;
         boolean isJson;
         try {
-            Map<String, String> body = extractJsonBody(exchange);
-            Optional<String> requestedOptional = requiresToken(body);
+            FriendRequestBody body = extractJsonBody(exchange, FriendRequestBody.class);
+            Optional<String> requestedOptional = requiresToken(body.getSessionToken());
             if (requestedOptional.isEmpty()) {
                 response = "Token not valid or not present";
                 httpStatus = HttpURLConnection.HTTP_UNAUTHORIZED;
                 isJson = false;
             } else {
                 String requested = requestedOptional.get();
-                String requester = body.get("requester");
+                String requester = body.getRequester();
                 if (requester == null) {
                     response = "Missing attribute: requester";
                     httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
@@ -423,7 +412,7 @@ public class UserController extends GenericHTTPHandler {
                     FriendRequest friendRequest = new FriendRequest(requesterUser, requestedUser, Calendar.getInstance());
                     if (FriendRequestService.getInstance().friendRequestExists(requesterUser, requestedUser)) { // if the friend request exists
                         // If they are friends already
-                        if (requestedUser.getFriends().contains(requesterUser)) {
+                        if (requestedUser.getFriendUsernames().contains(requesterUser.getUsername())) {
                             response = "You are already friends";
                             httpStatus = HttpURLConnection.HTTP_CONFLICT;
                             isJson = false;
@@ -459,15 +448,15 @@ public class UserController extends GenericHTTPHandler {
         int httpStatus;
         boolean isJson;
         try {
-            Map<String, String> body = extractJsonBody(exchange);
-            Optional<String> requestedOptional = requiresToken(body);
+            FriendRequestBody body = extractJsonBody(exchange, FriendRequestBody.class);
+            Optional<String> requestedOptional = requiresToken(body.getSessionToken());
             if (requestedOptional.isEmpty()) {
                 response = "Token not valid or not present";
                 httpStatus = HttpURLConnection.HTTP_UNAUTHORIZED;
                 isJson = false;
             } else {
                 String requested = requestedOptional.get();
-                String requester = body.get("requester");
+                String requester = body.getRequester();
                 if (requester == null) {
                     response = "Missing attribute: requester";
                     httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
@@ -499,19 +488,25 @@ public class UserController extends GenericHTTPHandler {
         String response;
         int httpStatus;
         boolean isJson;
+        Object[] limited = rateLimited(exchange, addressLimiter, clientAddress(exchange));
+        if (limited != null) {
+            return limited;
+        }
         try {
-            Map<String, String> body = extractJsonBody(exchange);
-            if (!body.containsKey("username") || !body.containsKey("password")) { // request without username or password
+            LoginBody body = extractJsonBody(exchange, LoginBody.class);
+            if (body.getUsername() == null || body.getPassword() == null) { // request without username or password
                 response = "The request must include an username and a password.";
                 httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
                 isJson = false;
+            } else if ((limited = rateLimited(exchange, usernameLimiter, body.getUsername())) != null) {
+                return limited;
             } else {
-                String username = body.get("username");
-                String rawPassword = body.get("password");
+                String username = body.getUsername();
+                String rawPassword = body.getPassword();
                 if (userRepository.findByUsername(username).isPresent()) { // request with existing username
                     if (compareCredentials(username, rawPassword)) { // valid request with matching passwords
                         String token = UserTokenService.generateToken(username);
-                        response = new ObjectMapper().writeValueAsString(Map.of(BODY_TOKEN_KEY, token));
+                        response = JsonCodec.writerFor(Map.class).writeValueAsString(Map.of(BODY_TOKEN_KEY, token));
                         httpStatus = HttpURLConnection.HTTP_OK;
                         isJson = true;
                     } else { // wrong credentials
@@ -538,10 +533,12 @@ public class UserController extends GenericHTTPHandler {
         String response;
         int httpStatus;
         boolean isJson;
+        Object[] limited = rateLimited(exchange, addressLimiter, clientAddress(exchange));
+        if (limited != null) {
+            return limited;
+        }
         try {
-            Map<String, String> body = extractJsonBody(exchange);
-            ObjectMapper objectMapper = new ObjectMapper();
-            User user = objectMapper.convertValue(body, User.class);
+            User user = extractJsonBody(exchange, User.class);
             if (user.getUsername().length() < MIN_USERNAME_LENGHT) {
                 response = String.format("Username too short. Min %d characters", MIN_USERNAME_LENGHT);
                 httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
@@ -558,6 +555,8 @@ public class UserController extends GenericHTTPHandler {
                 response = "Users need to indicate its date of birth.";
                 httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
                 isJson = false;
+            } else if ((limited = rateLimited(exchange, usernameLimiter, user.getUsername())) != null) {
+                return limited;
             } else {
                 user.setPassword(hashPassword(user.getPassword()));
                 if (createUser(user)) {
@@ -570,15 +569,15 @@ public class UserController extends GenericHTTPHandler {
                     isJson = false;
                 }
             }
+        } catch (DatabindException | IllegalArgumentException argumentException) {
+            response = "Invalid arguments for creating a new user";
+            httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
+            isJson = false;
         } catch (IOException ex) {
             response = "Internal error";
             httpStatus = HttpURLConnection.HTTP_INTERNAL_ERROR;
             isJson = false;
             LoggerService.logerror("Internal error while obtaining http body from request.");
-        } catch (IllegalArgumentException argumentException) {
-            response = "Invalid arguments for creating a new user";
-            httpStatus = HttpURLConnection.HTTP_BAD_REQUEST;
-            isJson = false;
         }
         return new Object[]{response, httpStatus, isJson};
     }
@@ -601,7 +600,7 @@ public class UserController extends GenericHTTPHandler {
             User user = result.get();
             user.setPassword("");
             try {
-                response = new ObjectMapper().writeValueAsString(user);
+                response = JsonCodec.writerFor(User.class).writeValueAsString(user);
                 httpStatus = HttpURLConnection.HTTP_OK;
                 isJson = true;
             } catch (JsonProcessingException ex) {
@@ -618,23 +617,37 @@ public class UserController extends GenericHTTPHandler {
         return new Object[]{response, httpStatus, isJson};
     }
 
-    private Object[] getAllUsersEndpoint() {
-        String response;
-        int httpStatus;
-        boolean isJson;
-        List<User> users = userRepository.findAllUsers();
-        users.forEach(user -> user.setPassword(""));
-        try {
-            response = new ObjectMapper().writeValueAsString(users);
-            httpStatus = HttpURLConnection.HTTP_OK;
-            isJson = true;
-        } catch (JsonProcessingException ex) {
-            response = "Internal error";
-            httpStatus = HttpURLConnection.HTTP_INTERNAL_ERROR;
-            isJson = false;
-            LoggerService.logerror("Internal error while parsing list of users to json format.");
+    // each user is written as it is read from the database, a chunk at a time, so the list is never in memory
+    private void streamAllUsersEndpoint(HttpExchange exchange) {
+        try (Stream<User> users = userRepository.streamAllUsers()) {
+            Utils.httpJsonStreamResponse(exchange, HttpURLConnection.HTTP_OK, generator -> {
+                generator.writeStartArray();
+                for (Iterator<User> iterator = users.iterator(); iterator.hasNext(); ) {
+                    User user = iterator.next();
+                    user.setPassword("");
+                    generator.writeObject(user);
+                }
+                generator.writeEndArray();
+            });
         }
-        return new Object[]{response, httpStatus, isJson};
+    }
+
+    /**
+     * Takes a token of the key from the limiter
+     * @return null if the request can go on, otherwise the 429 response to send, with its Retry-After header set
+     */
+    private static Object[] rateLimited(HttpExchange exchange, TokenBucketLimiter limiter, String key) {
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos == 0) {
+            return null;
+        }
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfter));
+        return new Object[]{"Too many requests, try again later", HTTP_TOO_MANY_REQUESTS, false};
+    }
+
+    private static String clientAddress(HttpExchange exchange) {
+        return exchange.getRemoteAddress().getAddress().getHostAddress();
     }
 
     private boolean compareCredentials(String username, String rawPassword) {
@@ -652,10 +665,14 @@ public class UserController extends GenericHTTPHandler {
         return encoder.encode(rawPassword);
     }
 
-    private Optional<String> requiresToken(Map<String, String> body) {
-        if (body.containsKey(BODY_TOKEN_KEY)) {
+    private Optional<String> requiresToken(Map<String, String> params) {
+        return requiresToken(params.get(BODY_TOKEN_KEY));
+    }
+
+    private Optional<String> requiresToken(String token) {
+        if (token != null) {
             try {
-                return Optional.of(UserTokenService.verifyToken(body.get(BODY_TOKEN_KEY)));
+                return Optional.of(UserTokenService.verifyToken(token));
             } catch (JWTVerificationException e) {
                 return Optional.empty();
             }
@@ -0,0 +1,368 @@
+package server.Database;
+
+import server.Model.FriendRequest;
+import server.Model.FriendRequestSummary;
+import server.Model.LazyReference;
+import server.Model.User;
+import server.Model.UserReference;
+import server.Utils.PropertiesLoader;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of the users of another repository, so the several lookups of the same users made by
+ * a request (and by the next ones) don't go to the database each time.
+ * - Entries expire after a ttl, so changes made by other servers are seen eventually.
+ * - The cache is bounded: when full, the least recently used user is only replaced by a new one that has been
+ *   asked for more often (TinyLFU admission), so a scan of users asked once doesn't evict the frequent ones.
+ *   The frequencies are estimated with a count-min sketch that is halved periodically to forget old accesses.
+ * - Writes going through this repository invalidate the users they change: their friends, or the user created.
+ * The users are stored as plain values and a new User is built on every hit, so callers can change the users
+ * they get (e.g. clearing the password) without changing the cache.
+ */
+public class CachingUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    // guarded by this, in access order so the eldest is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    // changes on every invalidation, so a load that overlapped one isn't cached
+    private long invalidations;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    // user == null caches that the username doesn't exist
+    private record Entry(CachedUser user, long expiresAt) {
+    }
+
+    private record CachedUser(String username, String password, long dateOfBirth, Set<String> friends) {
+    }
+
+    /**
+     * @param delegate repository the users are read from and written to
+     * @param maxSize users kept
+     * @param ttlNanos time a user is kept since it was read
+     * @param clock source of nanoseconds, System::nanoTime outside tests
+     */
+    public CachingUserRepository(UserRepository delegate, int maxSize, long ttlNanos, LongSupplier clock) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+        this.clock = clock;
+        this.sketch = new FrequencySketch(maxSize);
+    }
+
+    /**
+     * Builds the cache with the database.cache.users.* properties
+     */
+    public static CachingUserRepository fromProperties(UserRepository delegate) {
+        return new CachingUserRepository(delegate,
+                PropertiesLoader.getIntProperty("database.cache.users.maxsize", 10_000),
+                TimeUnit.SECONDS.toNanos(PropertiesLoader.getIntProperty("database.cache.users.ttlseconds", 60)),
+                System::nanoTime);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        Entry entry = lookup(username);
+        if (entry != null) {
+            return Optional.ofNullable(entry.user()).map(this::toUser);
+        }
+        long stamp = stamp();
+        Optional<User> user = delegate.findByUsername(username);
+        store(username, user.map(CachingUserRepository::toCached).orElse(null), stamp);
+        return user;
+    }
+
+    @Override
+    public List<User> findUsersByUsernames(Collection<String> usernames) {
+        List<User> users = new ArrayList<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String username : new LinkedHashSet<>(usernames)) {
+            Entry entry = lookup(username);
+            if (entry == null) {
+                missing.add(username);
+            } else if (entry.user() != null) {
+                users.add(toUser(entry.user()));
+            }
+        }
+        if (!missing.isEmpty()) {
+            long stamp = stamp();
+            List<User> loaded = delegate.findUsersByUsernames(List.copyOf(missing));
+            for (User user : loaded) {
+                store(user.getUsername(), toCached(user), stamp);
+                missing.remove(user.getUsername());
+            }
+            missing.forEach(username -> store(username, null, stamp));
+            users.addAll(loaded);
+        }
+        return users;
+    }
+
+    @Override
+    public Set<String> findFriendsFromUser(User friend) {
+        Entry entry = lookup(friend.getUsername());
+        if (entry != null && entry.user() != null) {
+            return new HashSet<>(entry.user().friends());
+        }
+        return delegate.findFriendsFromUser(friend);
+    }
+
+    // a whole scan would only evict the users that are being used
+    @Override
+    public List<User> findAllUsers() {
+        return delegate.findAllUsers();
+    }
+
+    @Override
+    public Stream<User> streamAllUsers() {
+        return delegate.streamAllUsers();
+    }
+
+    @Override
+    public void addUser(User user) {
+        delegate.addUser(user);
+        invalidate(user.getUsername());
+    }
+
+    @Override
+    public void addFriend(FriendRequest friendRequest) {
+        delegate.addFriend(friendRequest);
+        invalidate(friendRequest.getRequester().getUsername(), friendRequest.getRequested().getUsername());
+    }
+
+    @Override
+    public void deleteFriend(FriendRequest friendRequest) {
+        delegate.deleteFriend(friendRequest);
+        invalidate(friendRequest.getRequester().getUsername(), friendRequest.getRequested().getUsername());
+    }
+
+    // friend requests are not part of the users, so they go straight to the delegate
+
+    @Override
+    public void addFriendRequest(FriendRequest friendRequest) {
+        delegate.addFriendRequest(friendRequest);
+    }
+
+    @Override
+    public void deleteFriendRequest(FriendRequest friendRequest) {
+        delegate.deleteFriendRequest(friendRequest);
+    }
+
+    @Override
+    public Set<FriendRequest> findFriendRequestsByRequester(User requester) {
+        return delegate.findFriendRequestsByRequester(requester);
+    }
+
+    @Override
+    public Set<FriendRequest> findFriendRequestsByRequested(User requested) {
+        return delegate.findFriendRequestsByRequested(requested);
+    }
+
+    @Override
+    public Optional<FriendRequest> findFriendRequestsByBothUsers(User requester, User requested) {
+        return delegate.findFriendRequestsByBothUsers(requester, requested);
+    }
+
+    @Override
+    public List<FriendRequestSummary> findOutgoingRequestSummaries(String requester) {
+        return delegate.findOutgoingRequestSummaries(requester);
+    }
+
+    @Override
+    public List<FriendRequestSummary> findIncomingRequestSummaries(String requested) {
+        return delegate.findIncomingRequestSummaries(requested);
+    }
+
+    /**
+     * Forgets the given users, e.g. after changing them without this repository
+     */
+    public synchronized void invalidate(String... usernames) {
+        invalidations++;
+        for (String username : usernames) {
+            entries.remove(username);
+        }
+    }
+
+    private synchronized long stamp() {
+        return invalidations;
+    }
+
+    private synchronized Entry lookup(String username) {
+        sketch.increment(username);
+        Entry entry = entries.get(username);
+        if (entry != null && entry.expiresAt() - clock.getAsLong() <= 0) {
+            entries.remove(username);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private synchronized void store(String username, CachedUser user, long stamp) {
+        if (stamp != invalidations) {
+            return; // the user may have changed while it was loaded
+        }
+        if (!entries.containsKey(username) && entries.size() >= maxSize) {
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            String victim = eldest.next().getKey();
+            if (sketch.frequency(username) <= sketch.frequency(victim)) {
+                rejections.incrementAndGet();
+                return;
+            }
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+        entries.put(username, new Entry(user, clock.getAsLong() + ttlNanos));
+    }
+
+    private static CachedUser toCached(User user) {
+        return new CachedUser(user.getUsername(), user.getPassword(),
+                user.getDateOfBirth() == null ? Long.MIN_VALUE : user.getDateOfBirth().getTimeInMillis(),
+                Set.copyOf(user.getFriendUsernames()));
+    }
+
+    private User toUser(CachedUser cached) {
+        Calendar dateOfBirth = null;
+        if (cached.dateOfBirth() != Long.MIN_VALUE) {
+            dateOfBirth = Calendar.getInstance();
+            dateOfBirth.setTimeInMillis(cached.dateOfBirth());
+        }
+        User user = new User(cached.username(), cached.password(), dateOfBirth);
+        FriendBatch batch = new FriendBatch(cached.friends());
+        Set<LazyReference<User>> friends = new HashSet<>();
+        for (String friend : cached.friends()) {
+            friends.add(new UserReference(friend, () -> batch.get(friend)));
+        }
+        user.setFriends(friends);
+        return user;
+    }
+
+    // The friends of a user built from the cache, read together (through the cache) when one is needed
+    private class FriendBatch {
+        private final Set<String> usernames;
+        private Map<String, User> users;
+
+        private FriendBatch(Set<String> usernames) {
+            this.usernames = usernames;
+        }
+
+        private synchronized User get(String username) {
+            if (users == null) {
+                users = new HashMap<>();
+                findUsersByUsernames(usernames).forEach(user -> users.put(user.getUsername(), user));
+            }
+            User user = users.get(username);
+            if (user == null) {
+                throw new NoSuchElementException("Friend not found: " + username);
+            }
+            return user;
+        }
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", getSize());
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        stats.put("rejections", rejections.get());
+        return stats;
+    }
+
+    /**
+     * Count-min sketch of how often each key is asked for: 4 counters per key, in rows with different hashes,
+     * and the smallest one is the estimate. Counters stop at 15, and all of them are halved after 10 * maxSize
+     * increments, so the frequencies follow the recent accesses.
+     */
+    private static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int increments;
+
+        private FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, maxSize - 1)) << 1;
+            counters = new byte[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * Math.max(16, maxSize);
+        }
+
+        private int index(String key, int row) {
+            int hash = key.hashCode() * SEEDS[row];
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        private void increment(String key) {
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(key, row);
+                if (counters[row][index] < MAX_COUNT) {
+                    counters[row][index]++;
+                }
+            }
+            if (++increments >= sampleSize) {
+                for (byte[] row : counters) {
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] >>= 1;
+                    }
+                }
+                increments /= 2;
+            }
+        }
+
+        private int frequency(String key) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, counters[row][index(key, row)]);
+            }
+            return frequency;
+        }
+    }
+}
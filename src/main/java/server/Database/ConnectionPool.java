@@ -0,0 +1,440 @@
+package server.Database;
+
+import server.Utils.LoggerService;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of jdbc connections. {@link #getConnection()} lends a connection for one unit of work and
+ * closing it gives it back, so callers use try-with-resources as with a plain connection.
+ * At most maxSize connections exist: when all of them are lent, borrowing waits up to borrowTimeout and then fails.
+ * Connections idle for a while are validated before being lent, and are closed when they exceed the idle timeout
+ * or their max lifetime, so connections dropped by the server or a proxy are replaced instead of failing a query.
+ * Each connection keeps its prepared statements by sql text: closing one only clears it and closes its result sets,
+ * so the next prepareStatement with the same sql reuses it without a round trip to the server.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection connect() throws SQLException;
+    }
+
+    private static final long VALIDATE_AFTER_IDLE_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    // most recently returned first, so the connections in use stay warm and the rest can time out
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService evictor;
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementPrepares = new AtomicLong();
+    private volatile boolean closed;
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis, long maxLifetimeMillis) {
+        this(factory, maxSize, borrowTimeoutMillis, idleTimeoutMillis, maxLifetimeMillis, DEFAULT_STATEMENT_CACHE_SIZE);
+    }
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long borrowTimeoutMillis, long idleTimeoutMillis, long maxLifetimeMillis,
+                          int statementCacheSize) {
+        this.factory = factory;
+        this.statementCacheSize = statementCacheSize;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.permits = new Semaphore(maxSize, true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, maxLifetimeMillis) / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public static ConnectionPool forUrl(String url, String user, String password, int maxSize, long borrowTimeoutMillis,
+                                        long idleTimeoutMillis, long maxLifetimeMillis, int statementCacheSize) {
+        return new ConnectionPool(() -> DriverManager.getConnection(url, user, password),
+                maxSize, borrowTimeoutMillis, idleTimeoutMillis, maxLifetimeMillis, statementCacheSize);
+    }
+
+    /**
+     * Lends a connection, close it to give it back to the pool
+     * @throws SQLTransientConnectionException if no connection is available before the borrow timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        waiting.incrementAndGet();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTransientConnectionException(String.format(
+                        "No database connection available after %d ms (%d active)", borrowTimeoutMillis, active.get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection");
+        } finally {
+            waiting.decrementAndGet();
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(factory.connect());
+                total.incrementAndGet();
+            }
+            active.incrementAndGet();
+            return pooled.lend();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // returns a usable idle connection, discarding the expired or broken ones, or null if there is none
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long now = System.currentTimeMillis();
+            if (pooled.isExpired(now)) {
+                discard(pooled);
+            } else if (now - pooled.lastUsed > VALIDATE_AFTER_IDLE_MILLIS && !pooled.isValid()) {
+                discard(pooled);
+            } else {
+                return pooled;
+            }
+        }
+        return null;
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        active.decrementAndGet();
+        try {
+            if (closed || pooled.isExpired(System.currentTimeMillis()) || !pooled.reset()) {
+                discard(pooled);
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledConnection pooled : idle.toArray(new PooledConnection[0])) {
+            if (pooled.isExpired(now) && idle.remove(pooled)) {
+                discard(pooled);
+            }
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        total.decrementAndGet();
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            LoggerService.logerror("Error closing a pooled connection");
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", active.get());
+        stats.put("idle", idle.size());
+        stats.put("waiting", waiting.get());
+        stats.put("total", total.get());
+        stats.put("maxSize", maxSize);
+        stats.put("timeouts", timeouts.get());
+        stats.put("statementCacheHits", statementHits.get());
+        stats.put("statementPrepares", statementPrepares.get());
+        return stats;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * Closes the idle connections, the lent ones are closed when they are given back
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private class PooledConnection {
+        private final Connection physical;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+        // least recently used first, only touched by the borrower of the connection
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        private boolean isExpired(long now) {
+            return now - createdAt > maxLifetimeMillis || now - lastUsed > idleTimeoutMillis;
+        }
+
+        private boolean isValid() {
+            try {
+                return physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private PreparedStatement prepare(Connection lent, String sql) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && cached.inUse) {
+                // same sql prepared again before closing the first one, this one can't be shared
+                statementPrepares.incrementAndGet();
+                CachedStatement uncached = new CachedStatement(physical.prepareStatement(sql));
+                uncached.evicted = true; // closed when released
+                return uncached.lend(lent);
+            }
+            if (cached == null) {
+                statementPrepares.incrementAndGet();
+                cached = new CachedStatement(physical.prepareStatement(sql));
+                statements.put(sql, cached);
+            } else {
+                statementHits.incrementAndGet();
+            }
+            return cached.lend(lent);
+        }
+
+        // leaves the connection as a new one for the next borrower, false if it is broken
+        private boolean reset() {
+            try {
+                for (CachedStatement cached : statements.values()) {
+                    cached.release(); // statements the borrower forgot to close
+                }
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                physical.clearWarnings();
+                return !physical.isClosed();
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        private Connection lend() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    new LentConnection(this));
+        }
+    }
+
+    // The connection seen by the borrower: close() gives it back, and it can't be used after that
+    private class LentConnection implements InvocationHandler {
+        private PooledConnection pooled;
+
+        private LentConnection(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (pooled != null) {
+                        PooledConnection returned = pooled;
+                        pooled = null;
+                        giveBack(returned);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return pooled == null || pooled.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled " + (pooled == null ? "closed connection" : pooled.physical.toString());
+                }
+            }
+            if (pooled == null) {
+                throw new SQLException("Connection already returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                return pooled.prepare((Connection) proxy, (String) args[0]);
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    // A prepared statement kept open by its connection. It is lent to one borrower at a time
+    private static class CachedStatement {
+        private final PreparedStatement physical;
+        private final List<ResultSet> resultSets = new ArrayList<>(1);
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        private PreparedStatement lend(Connection lent) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new LentStatement(this, lent));
+        }
+
+        // closes what the borrower left open and makes the statement available again
+        private void release() {
+            if (!inUse) {
+                return;
+            }
+            inUse = false;
+            try {
+                for (ResultSet rs : resultSets) {
+                    rs.close();
+                }
+                resultSets.clear();
+                if (evicted) {
+                    physical.close();
+                } else {
+                    physical.clearParameters();
+                }
+            } catch (SQLException e) {
+                LoggerService.logerror("Error releasing a cached statement");
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                try {
+                    physical.close();
+                } catch (SQLException e) {
+                    LoggerService.logerror("Error closing a cached statement");
+                }
+            }
+        }
+    }
+
+    // The statement seen by the borrower: close() releases it to the cache, and it can't be used after that
+    private static class LentStatement implements InvocationHandler {
+        private CachedStatement cached;
+        private final Connection lent;
+
+        private LentStatement(CachedStatement cached, Connection lent) {
+            this.cached = cached;
+            this.lent = lent;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (cached != null) {
+                        cached.release();
+                        cached = null;
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return cached == null;
+                }
+                case "getConnection" -> {
+                    return lent;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Cached " + (cached == null ? "closed statement" : cached.physical.toString());
+                }
+            }
+            if (cached == null) {
+                throw new SQLException("Statement already closed");
+            }
+            if (method.getName().startsWith("execute")) {
+                QueryStats.record();
+            }
+            try {
+                Object result = method.invoke(cached.physical, args);
+                if (result instanceof ResultSet rs) {
+                    cached.resultSets.add(rs);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
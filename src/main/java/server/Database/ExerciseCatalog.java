@@ -0,0 +1,261 @@
+package server.Database;
+
+import server.Model.Exercise;
+import server.Model.ExercisePage;
+import server.Model.GymExercise;
+import server.Utils.LoggerService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Exercise catalog kept in memory, as it is small and rarely changes.
+ * Every value of every facet (muscle group, equipment...) has the bitset of the exercises that have it,
+ * so a query with several filters is the intersection of a few bitsets, without touching the database.
+ * The catalog is loaded from another repository when created and again with {@link #refresh()};
+ * each load builds a new snapshot that replaces the previous one at once, queries never see it half built.
+ */
+public class ExerciseCatalog implements ExerciseRepository {
+
+    // column of the exercises table -> value of the exercise
+    private enum Facet {
+        SETS_TYPE(ExerciseColumn.SETS_TYPE, Exercise.SetsType.class, Exercise::getSetsType),
+        DIFFICULTY(ExerciseColumn.DIFFICULTY, GymExercise.DifficultyLevel.class, gym(GymExercise::getDifficultyLevel)),
+        MUSCLE_GROUP(ExerciseColumn.MUSCLE_GROUP, GymExercise.MuscleGroup.class, gym(GymExercise::getMuscleGroup)),
+        EQUIPMENT(ExerciseColumn.EQUIPMENT, GymExercise.Equipment.class, gym(GymExercise::getEquipment)),
+        ARM(ExerciseColumn.SINGLE_DOUBLE_ARM, GymExercise.SingleArm.class, gym(GymExercise::getArm)),
+        GRIP(ExerciseColumn.GRIP, GymExercise.Grip.class, gym(GymExercise::getGrip)),
+        BODY_REGION(ExerciseColumn.BODY_REGION, GymExercise.BodyRegion.class, gym(GymExercise::getBodyRegion));
+
+        private static final Map<ExerciseColumn, Facet> BY_COLUMN = new EnumMap<>(ExerciseColumn.class);
+
+        static {
+            for (Facet facet : values()) {
+                BY_COLUMN.put(facet.column, facet);
+            }
+        }
+
+        private final ExerciseColumn column;
+        private final Class<? extends Enum<?>> type;
+        private final Function<Exercise, Enum<?>> value;
+
+        Facet(ExerciseColumn column, Class<? extends Enum<?>> type, Function<Exercise, Enum<?>> value) {
+            this.column = column;
+            this.type = type;
+            this.value = value;
+        }
+
+        private static Function<Exercise, Enum<?>> gym(Function<GymExercise, Enum<?>> value) {
+            return exercise -> exercise instanceof GymExercise gymExercise ? value.apply(gymExercise) : null;
+        }
+
+        // values are stored like "Hip Flexors" or "Unsorted*", the same conversion MySqlConnector does when reading them
+        private int indexOf(String value) {
+            String name = value.trim().toUpperCase(Locale.ROOT).replace(" ", "_").replace("*", "");
+            for (Enum<?> constant : type.getEnumConstants()) {
+                if (constant.name().equals(name)) {
+                    return constant.ordinal();
+                }
+            }
+            return -1;
+        }
+    }
+
+    // exercises are sorted by their name key, the order of the pages
+    private record Snapshot(Exercise[] exercises, String[] keys, Set<Exercise> all, Map<String, Integer> byName, BitSet[][] facets,
+                            ExerciseSearchIndex search) {
+    }
+
+    private final ExerciseRepository source;
+    private volatile Snapshot snapshot;
+
+    /**
+     * @param source repository the catalog is loaded from, usually the database
+     */
+    public ExerciseCatalog(ExerciseRepository source) {
+        this.source = source;
+        refresh();
+    }
+
+    /**
+     * Loads the catalog again from the source, call it when the exercises table changes
+     */
+    public void refresh() {
+        long start = System.nanoTime();
+        snapshot = build(source.findAllExercises());
+        LoggerService.log(String.format("Exercise catalog loaded: %d exercises in %d ms",
+                snapshot.exercises().length, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private static Snapshot build(Set<Exercise> loaded) {
+        List<Exercise> sorted = new ArrayList<>(loaded);
+        sorted.sort(Comparator.comparing((Exercise exercise) -> nameKey(exercise.getExerciseName())).thenComparing(Exercise::getExerciseName));
+        Exercise[] exercises = sorted.toArray(new Exercise[0]);
+        String[] keys = new String[exercises.length];
+
+        Map<String, Integer> byName = new HashMap<>();
+        BitSet[][] facets = new BitSet[Facet.values().length][];
+        for (Facet facet : Facet.values()) {
+            facets[facet.ordinal()] = new BitSet[facet.type.getEnumConstants().length];
+        }
+        for (int i = 0; i < exercises.length; i++) {
+            keys[i] = nameKey(exercises[i].getExerciseName());
+            byName.put(keys[i], i);
+            for (Facet facet : Facet.values()) {
+                Enum<?> value = facet.value.apply(exercises[i]);
+                if (value != null) {
+                    BitSet[] values = facets[facet.ordinal()];
+                    if (values[value.ordinal()] == null) {
+                        values[value.ordinal()] = new BitSet(exercises.length);
+                    }
+                    values[value.ordinal()].set(i);
+                }
+            }
+        }
+        Set<Exercise> all = Collections.unmodifiableSet(new LinkedHashSet<>(sorted));
+        return new Snapshot(exercises, keys, all, Map.copyOf(byName), facets, new ExerciseSearchIndex(sorted));
+    }
+
+    // the table compares names ignoring case and accents (utf8mb4_0900_ai_ci)
+    private static String nameKey(String name) {
+        return ExerciseSearchIndex.normalize(name);
+    }
+
+    @Override
+    public Optional<Exercise> findExerciseByName(String exerciseName) {
+        Snapshot current = snapshot;
+        Integer index = current.byName().get(nameKey(exerciseName));
+        return index == null ? Optional.empty() : Optional.of(current.exercises()[index]);
+    }
+
+    @Override
+    public Map<String, Exercise> findExercisesByNames(Collection<String> exerciseNames) {
+        Snapshot current = snapshot;
+        Map<String, Exercise> found = new HashMap<>();
+        for (String exerciseName : exerciseNames) {
+            Integer index = current.byName().get(nameKey(exerciseName));
+            if (index != null) {
+                found.put(exerciseName, current.exercises()[index]);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public Set<Exercise> findAllExercises() {
+        return snapshot.all();
+    }
+
+    @Override
+    public Set<Exercise> findExerciseWithFilters(Map<String, String> filters) {
+        Snapshot current = snapshot;
+        BitSet matches = new BitSet(current.exercises().length);
+        matches.set(0, current.exercises().length);
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            Optional<ExerciseColumn> column = ExerciseColumn.fromColumn(filter.getKey());
+            if (column.isPresent() && column.get() == ExerciseColumn.EXERCISE_NAME) {
+                Integer index = current.byName().get(nameKey(filter.getValue()));
+                boolean matched = index != null && matches.get(index);
+                matches.clear();
+                if (matched) {
+                    matches.set(index);
+                }
+                continue;
+            }
+            Facet facet = column.map(Facet.BY_COLUMN::get).orElse(null);
+            if (facet == null) {
+                // a column the catalog doesn't index, the database still knows how to filter it
+                return source.findExerciseWithFilters(filters);
+            }
+            int index = facet.indexOf(filter.getValue());
+            BitSet values = index < 0 ? null : current.facets()[facet.ordinal()][index];
+            if (values == null) {
+                return Set.of();
+            }
+            matches.and(values);
+        }
+
+        Set<Exercise> result = new LinkedHashSet<>();
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            result.add(current.exercises()[i]);
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public ExercisePage findExercises(ExerciseQuery query) {
+        Snapshot current = snapshot;
+        BitSet matches = new BitSet(current.exercises().length);
+        matches.set(0, current.exercises().length);
+        for (Map.Entry<ExerciseColumn, List<String>> filter : query.getFilters().entrySet()) {
+            BitSet accepted = new BitSet(current.exercises().length);
+            if (filter.getKey() == ExerciseColumn.EXERCISE_NAME) {
+                for (String name : filter.getValue()) {
+                    Integer index = current.byName().get(nameKey(name));
+                    if (index != null) {
+                        accepted.set(index);
+                    }
+                }
+            } else {
+                Facet facet = Facet.BY_COLUMN.get(filter.getKey());
+                if (facet == null) {
+                    return source.findExercises(query);
+                }
+                BitSet[] values = current.facets()[facet.ordinal()];
+                for (String value : filter.getValue()) {
+                    int index = facet.indexOf(value);
+                    if (index >= 0 && values[index] != null) {
+                        accepted.or(values[index]);
+                    }
+                }
+            }
+            matches.and(accepted);
+        }
+
+        int start = 0;
+        if (query.getAfter() != null) {
+            int found = Arrays.binarySearch(current.keys(), nameKey(query.getAfter()));
+            start = found >= 0 ? found + 1 : -found - 1;
+        }
+        List<Exercise> exercises = new ArrayList<>(Math.min(query.getLimit(), 64));
+        int i = matches.nextSetBit(start);
+        while (i >= 0 && exercises.size() < query.getLimit()) {
+            exercises.add(current.exercises()[i]);
+            i = matches.nextSetBit(i + 1);
+        }
+        return new ExercisePage(exercises, i >= 0 ? exercises.getLast().getExerciseName() : null);
+    }
+
+    @Override
+    public List<Exercise> searchExercises(String text, int limit) {
+        return snapshot.search().search(text, limit);
+    }
+
+    public Map<String, Object> stats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("exercises", current.exercises().length);
+        for (Facet facet : Facet.values()) {
+            int values = 0;
+            for (BitSet bitSet : current.facets()[facet.ordinal()]) {
+                values += bitSet == null ? 0 : 1;
+            }
+            stats.put(facet.column.getColumn(), values);
+        }
+        return stats;
+    }
+}
@@ -0,0 +1,40 @@
+package server.Database;
+
+import java.util.Optional;
+
+/**
+ * Columns of the exercises table that queries can filter by. Filters name a column of this enum
+ * instead of giving its name, so nothing coming from a request is ever written into the sql.
+ */
+public enum ExerciseColumn {
+    EXERCISE_NAME("exercise_name"),
+    DIFFICULTY("difficulty"),
+    MUSCLE_GROUP("muscle_group"),
+    GRIP("grip"),
+    SINGLE_DOUBLE_ARM("single_double_arm"),
+    BODY_REGION("body_region"),
+    PRIMARY_MUSCLE_GROUP("primary_muscle_group"),
+    SECONDARY_MUSCLE_GROUP("secondary_muscle_group"),
+    TERTIARY_MUSCLE_GROUP("tertiary_muscle_group"),
+    EQUIPMENT("equipment"),
+    SETS_TYPE("sets_type");
+
+    private final String column;
+
+    ExerciseColumn(String column) {
+        this.column = column;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public static Optional<ExerciseColumn> fromColumn(String column) {
+        for (ExerciseColumn value : values()) {
+            if (value.column.equals(column)) {
+                return Optional.of(value);
+            }
+        }
+        return Optional.empty();
+    }
+}
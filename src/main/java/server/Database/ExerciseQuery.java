@@ -0,0 +1,143 @@
+package server.Database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A page of the exercise catalog: the values accepted for each column (an exercise matches if it has any of
+ * the values of every column), ordered by name and starting after a name (keyset pagination).
+ * Queries with the same shape (columns filtered, size of their IN-lists and whether they continue after a name)
+ * build the same sql, which is kept, so each shape is prepared once per connection and then reused.
+ */
+public final class ExerciseQuery {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private static final String SELECT = "SELECT exercise_name, sets_type, difficulty, muscle_group, equipment, "
+            + "single_double_arm, grip, body_region FROM %s";
+    private static final Map<String, String> sqlByShape = new ConcurrentHashMap<>();
+
+    private final Map<ExerciseColumn, List<String>> filters;
+    private final String after;
+    private final int limit;
+
+    private ExerciseQuery(Map<ExerciseColumn, List<String>> filters, String after, int limit) {
+        this.filters = Collections.unmodifiableMap(filters);
+        this.after = after;
+        this.limit = limit;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return values accepted for each column, in the order of the columns in {@link ExerciseColumn}
+     */
+    public Map<ExerciseColumn, List<String>> getFilters() {
+        return filters;
+    }
+
+    /**
+     * @return name the page starts after, null for the first page
+     */
+    public String getAfter() {
+        return after;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Sql of the shape of this query, reading one row more than the limit to know if there is a next page
+     */
+    public String sql(String table) {
+        StringBuilder shape = new StringBuilder(table);
+        filters.forEach((column, values) -> shape.append(',').append(column.ordinal())
+                .append(':').append(MySqlConnector.inListSize(values.size())));
+        shape.append(after == null ? ",first" : ",after");
+        return sqlByShape.computeIfAbsent(shape.toString(), key -> buildSql(table));
+    }
+
+    private String buildSql(String table) {
+        List<String> conditions = new ArrayList<>();
+        filters.forEach((column, values) -> conditions.add(column.getColumn() + " IN ("
+                + String.join(",", Collections.nCopies(MySqlConnector.inListSize(values.size()), "?")) + ")"));
+        if (after != null) {
+            conditions.add("exercise_name > ?");
+        }
+        StringBuilder sql = new StringBuilder(String.format(SELECT, table));
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        return sql.append(" ORDER BY exercise_name LIMIT ?").toString();
+    }
+
+    /**
+     * Binds the values of the query to a statement prepared with {@link #sql}
+     */
+    public void bind(PreparedStatement statement) throws SQLException {
+        int index = 1;
+        for (List<String> values : filters.values()) {
+            int size = MySqlConnector.inListSize(values.size());
+            for (int i = 0; i < size; i++) {
+                statement.setString(index++, values.get(Math.min(i, values.size() - 1)));
+            }
+        }
+        if (after != null) {
+            statement.setString(index++, after);
+        }
+        statement.setInt(index, limit + 1);
+    }
+
+    public static class Builder {
+
+        private final Map<ExerciseColumn, List<String>> filters = new EnumMap<>(ExerciseColumn.class);
+        private String after;
+        private int limit = DEFAULT_LIMIT;
+
+        /**
+         * Accepts exercises with any of the values in the column, calling it again for the same column adds values
+         */
+        public Builder where(ExerciseColumn column, String... values) {
+            return where(column, List.of(values));
+        }
+
+        public Builder where(ExerciseColumn column, Collection<String> values) {
+            if (values.isEmpty()) {
+                throw new IllegalArgumentException("No values for " + column.getColumn());
+            }
+            LinkedHashSet<String> merged = new LinkedHashSet<>(filters.getOrDefault(column, List.of()));
+            merged.addAll(values);
+            filters.put(column, List.copyOf(merged));
+            return this;
+        }
+
+        public Builder after(String exerciseName) {
+            this.after = exerciseName;
+            return this;
+        }
+
+        public Builder limit(int limit) {
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException(String.format("The limit must be between 1 and %d", MAX_LIMIT));
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        public ExerciseQuery build() {
+            return new ExerciseQuery(new EnumMap<>(filters), after, limit);
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package server.Database;
 
 import server.Model.Exercise;
+import server.Model.ExercisePage;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -9,6 +12,13 @@ import java.util.Set;
 public interface ExerciseRepository {
 
     public Optional<Exercise> findExerciseByName(String exerciseName);
+    /**
+     * Finds several exercises at once, comparing names as findExerciseByName does
+     * @return the exercises found, keyed by the name they were asked with
+     */
+    public Map<String, Exercise> findExercisesByNames(Collection<String> exerciseNames);
     public Set<Exercise> findAllExercises();
     public Set<Exercise> findExerciseWithFilters(Map<String, String> filters);
+    public ExercisePage findExercises(ExerciseQuery query);
+    public List<Exercise> searchExercises(String text, int limit);
 }
@@ -0,0 +1,219 @@
+package server.Database;
+
+import server.Model.Exercise;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Search over the names of the exercises, built once for a catalog and then only read, so it is thread-safe.
+ * Names are split in words (lowercase and without accents), and every word of the text searched is compared
+ * with the dictionary of words of the catalog:
+ * - the same word scores 1
+ * - a word starting with it (autocompletion, "clubb" -> "clubbell") scores between 0.6 and 0.9
+ * - a similar word (typos, "clubel" -> "clubbell") scores by the trigrams both share, up to 0.8
+ * An exercise scores the average of the best score of each word searched, plus a bonus if its name starts
+ * with the text, and the best ones are kept in a heap of the size of the results asked.
+ */
+public class ExerciseSearchIndex {
+
+    private static final double MIN_SIMILARITY = 0.3;
+    private static final double FUZZY_WEIGHT = 0.8;
+    private static final double NAME_PREFIX_BONUS = 0.2;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+
+    private final Exercise[] exercises;
+    private final String[] keys;
+    private final String[] words; // sorted, so the words starting with a prefix are a range
+    private final int[][] postings; // word -> exercises with it, ascending
+    private final Map<String, int[]> trigramWords;
+    private final int[] trigramCounts; // word -> number of trigrams
+    // better score first, then shorter name, then alphabetical
+    private final Comparator<Hit> ranking;
+
+    private record Hit(int exercise, double score) {
+    }
+
+    public ExerciseSearchIndex(List<Exercise> catalog) {
+        exercises = catalog.toArray(new Exercise[0]);
+        keys = new String[exercises.length];
+        TreeMap<String, List<Integer>> dictionary = new TreeMap<>();
+        for (int i = 0; i < exercises.length; i++) {
+            keys[i] = normalize(exercises[i].getExerciseName());
+            for (String word : tokenize(keys[i])) {
+                List<Integer> exercisesWithWord = dictionary.computeIfAbsent(word, key -> new ArrayList<>());
+                if (exercisesWithWord.isEmpty() || exercisesWithWord.getLast() != i) {
+                    exercisesWithWord.add(i);
+                }
+            }
+        }
+
+        words = dictionary.keySet().toArray(new String[0]);
+        postings = new int[words.length][];
+        trigramCounts = new int[words.length];
+        Map<String, List<Integer>> trigrams = new HashMap<>();
+        for (int w = 0; w < words.length; w++) {
+            postings[w] = dictionary.get(words[w]).stream().mapToInt(Integer::intValue).toArray();
+            List<String> wordTrigrams = trigrams(words[w]);
+            trigramCounts[w] = wordTrigrams.size();
+            for (String trigram : wordTrigrams) {
+                trigrams.computeIfAbsent(trigram, key -> new ArrayList<>()).add(w);
+            }
+        }
+        ranking = Comparator.comparingDouble(Hit::score)
+                .thenComparing(Comparator.comparingInt((Hit hit) -> keys[hit.exercise()].length()).reversed())
+                .thenComparing((Hit hit) -> keys[hit.exercise()], Comparator.reverseOrder());
+        trigramWords = new HashMap<>();
+        trigrams.forEach((trigram, wordIds) -> trigramWords.put(trigram, wordIds.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * @param text words, complete or not, of the name searched
+     * @param limit maximum number of results
+     * @return the exercises that best match the text, best first
+     */
+    public List<Exercise> search(String text, int limit) {
+        String query = normalize(text);
+        List<String> queryWords = tokenize(query);
+        if (queryWords.isEmpty() || limit < 1) {
+            return List.of();
+        }
+
+        double[] total = new double[exercises.length];
+        double[] best = new double[exercises.length];
+        int[] touched = new int[exercises.length];
+        boolean[] matched = new boolean[exercises.length];
+        int matchedCount = 0;
+        int[] matchedExercises = new int[exercises.length];
+        double[] wordScores = new double[words.length];
+        int[] similarWords = new int[words.length];
+        int[] sharedTrigrams = new int[words.length];
+
+        for (String queryWord : queryWords) {
+            int similarCount = scoreWords(queryWord, wordScores, similarWords, sharedTrigrams);
+            int touchedCount = 0;
+            for (int s = 0; s < similarCount; s++) {
+                int w = similarWords[s];
+                for (int exercise : postings[w]) {
+                    if (best[exercise] == 0) {
+                        touched[touchedCount++] = exercise;
+                    }
+                    best[exercise] = Math.max(best[exercise], wordScores[w]);
+                }
+                wordScores[w] = 0;
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int exercise = touched[i];
+                total[exercise] += best[exercise];
+                best[exercise] = 0;
+                if (!matched[exercise]) {
+                    matched[exercise] = true;
+                    matchedExercises[matchedCount++] = exercise;
+                }
+            }
+        }
+
+        // the worst of the best results is on top, to be replaced by a better one
+        PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, ranking);
+        for (int i = 0; i < matchedCount; i++) {
+            int exercise = matchedExercises[i];
+            double score = total[exercise] / queryWords.size() + (keys[exercise].startsWith(query) ? NAME_PREFIX_BONUS : 0);
+            if (top.size() == limit && score < top.peek().score()) {
+                continue; // can't enter the results
+            }
+            top.add(new Hit(exercise, score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        Exercise[] results = new Exercise[top.size()];
+        for (int i = results.length - 1; i >= 0; i--) {
+            results[i] = exercises[top.poll().exercise()];
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Fills the score of the words of the dictionary similar to the word searched
+     * @param similar filled with the words scored
+     * @param shared all zeros, left that way
+     * @return number of words scored
+     */
+    private int scoreWords(String queryWord, double[] wordScores, int[] similar, int[] shared) {
+        int count = 0;
+        int first = lowerBound(queryWord);
+        for (int w = first; w < words.length && words[w].startsWith(queryWord); w++) {
+            wordScores[w] = words[w].length() == queryWord.length() ? 1 : 0.6 + 0.3 * queryWord.length() / words[w].length();
+            similar[count++] = w;
+        }
+
+        List<String> queryTrigrams = trigrams(queryWord);
+        int sharing = count;
+        for (String trigram : queryTrigrams) {
+            int[] wordIds = trigramWords.get(trigram);
+            if (wordIds != null) {
+                for (int w : wordIds) {
+                    if (shared[w]++ == 0 && wordScores[w] == 0) {
+                        similar[sharing++] = w; // candidate, kept only if similar enough
+                    }
+                }
+            }
+        }
+        count = 0; // keeps the words scored at the start of the array
+        for (int i = 0; i < sharing; i++) {
+            int w = similar[i];
+            double similarity = (double) shared[w] / (queryTrigrams.size() + trigramCounts[w] - shared[w]);
+            shared[w] = 0;
+            if (similarity >= MIN_SIMILARITY && similarity * FUZZY_WEIGHT > wordScores[w]) {
+                wordScores[w] = similarity * FUZZY_WEIGHT;
+            }
+            if (wordScores[w] > 0) {
+                similar[count++] = w;
+            }
+        }
+        return count;
+    }
+
+    private int lowerBound(String word) {
+        int found = Arrays.binarySearch(words, word);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    // trigrams of the word with a space at both ends, so short words and their first letters count too
+    private static List<String> trigrams(String word) {
+        String padded = " " + word + " ";
+        List<String> trigrams = new ArrayList<>(padded.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            String trigram = padded.substring(i, i + 3);
+            if (!trigrams.contains(trigram)) {
+                trigrams.add(trigram);
+            }
+        }
+        return trigrams;
+    }
+
+    static String normalize(String text) {
+        return MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> tokenize(String normalized) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
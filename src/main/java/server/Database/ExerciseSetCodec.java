@@ -0,0 +1,88 @@
+package server.Database;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import server.Model.CardioExercise;
+import server.Model.Exercise;
+import server.Model.ExerciseSet;
+import server.Model.GymExercise;
+import server.Model.Set;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes an exercise of a routine as {exerciseName, setsType, sets}. Only the name of the exercise is stored,
+ * so the exercise read is a placeholder with its name and sets type, completed later from the catalog.
+ */
+public class ExerciseSetCodec implements Codec<ExerciseSet> {
+
+    private static final String EXERCISE_NAME = "exerciseName";
+    private static final String SETS_TYPE = "setsType";
+    private static final String SETS = "sets";
+
+    private final SetCodec setCodec;
+
+    public ExerciseSetCodec(SetCodec setCodec) {
+        this.setCodec = setCodec;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, ExerciseSet exerciseSet, EncoderContext encoderContext) {
+        Exercise exercise = exerciseSet.getExercise();
+        writer.writeStartDocument();
+        writer.writeString(EXERCISE_NAME, exercise.getExerciseName());
+        writer.writeString(SETS_TYPE, exercise.getSetsType().name());
+        writer.writeStartArray(SETS);
+        if (exerciseSet.getSets() != null) {
+            for (Set set : exerciseSet.getSets()) {
+                setCodec.encode(writer, set, exercise.getSetsType());
+            }
+        }
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public ExerciseSet decode(BsonReader reader, DecoderContext decoderContext) {
+        String exerciseName = null;
+        Exercise.SetsType setsType = null;
+        List<Set> sets = new ArrayList<>();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case EXERCISE_NAME -> exerciseName = reader.readString();
+                case SETS_TYPE -> setsType = Exercise.SetsType.valueOf(reader.readString());
+                case SETS -> {
+                    reader.readStartArray();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                        sets.add(setCodec.decode(reader, decoderContext));
+                    }
+                    reader.readEndArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new ExerciseSet(placeholder(exerciseName, setsType), sets);
+    }
+
+    private static Exercise placeholder(String exerciseName, Exercise.SetsType setsType) {
+        if (setsType == Exercise.SetsType.TIME_DISTANCE) {
+            CardioExercise exercise = new CardioExercise();
+            exercise.setExerciseName(exerciseName);
+            exercise.setSetsType(setsType);
+            return exercise;
+        }
+        return new GymExercise(exerciseName, setsType, null, null, null, null, null, null);
+    }
+
+    @Override
+    public Class<ExerciseSet> getEncoderClass() {
+        return ExerciseSet.class;
+    }
+}
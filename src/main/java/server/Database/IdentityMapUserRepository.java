@@ -0,0 +1,140 @@
+package server.Database;
+
+import server.Model.FriendRequest;
+import server.Model.FriendRequestSummary;
+import server.Model.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Repository that reads each user at most once per request: the users read are kept in the {@link RequestScope}
+ * of the thread, so the controller and the services get the same User while the request lasts.
+ * The friendship writes forget the users they change, and outside a request every call goes to the delegate.
+ */
+public class IdentityMapUserRepository implements UserRepository {
+
+    private final UserRepository delegate;
+
+    public IdentityMapUserRepository(UserRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        RequestScope scope = RequestScope.current();
+        if (scope == null) {
+            return delegate.findByUsername(username);
+        }
+        return scope.user(username, () -> delegate.findByUsername(username));
+    }
+
+    @Override
+    public List<User> findUsersByUsernames(Collection<String> usernames) {
+        RequestScope scope = RequestScope.current();
+        if (scope == null) {
+            return delegate.findUsersByUsernames(usernames);
+        }
+        List<User> users = new ArrayList<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String username : new LinkedHashSet<>(usernames)) {
+            Optional<User> user = scope.cachedUser(username);
+            if (user == null) {
+                missing.add(username);
+            } else {
+                user.ifPresent(users::add);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (User user : delegate.findUsersByUsernames(List.copyOf(missing))) {
+                scope.putUser(user.getUsername(), Optional.of(user));
+                missing.remove(user.getUsername());
+                users.add(user);
+            }
+            missing.forEach(username -> scope.putUser(username, Optional.empty()));
+        }
+        return users;
+    }
+
+    @Override
+    public void addUser(User user) {
+        delegate.addUser(user);
+        forget(user.getUsername());
+    }
+
+    @Override
+    public void addFriend(FriendRequest friendRequest) {
+        delegate.addFriend(friendRequest);
+        forget(friendRequest.getRequester().getUsername(), friendRequest.getRequested().getUsername());
+    }
+
+    @Override
+    public void deleteFriend(FriendRequest friendRequest) {
+        delegate.deleteFriend(friendRequest);
+        forget(friendRequest.getRequester().getUsername(), friendRequest.getRequested().getUsername());
+    }
+
+    private static void forget(String... usernames) {
+        RequestScope scope = RequestScope.current();
+        if (scope != null) {
+            for (String username : usernames) {
+                scope.forget(username);
+            }
+        }
+    }
+
+    @Override
+    public List<User> findAllUsers() {
+        return delegate.findAllUsers();
+    }
+
+    @Override
+    public Stream<User> streamAllUsers() {
+        return delegate.streamAllUsers();
+    }
+
+    @Override
+    public Set<String> findFriendsFromUser(User friend) {
+        return delegate.findFriendsFromUser(friend);
+    }
+
+    @Override
+    public void addFriendRequest(FriendRequest friendRequest) {
+        delegate.addFriendRequest(friendRequest);
+    }
+
+    @Override
+    public void deleteFriendRequest(FriendRequest friendRequest) {
+        delegate.deleteFriendRequest(friendRequest);
+    }
+
+    @Override
+    public Set<FriendRequest> findFriendRequestsByRequester(User requester) {
+        return delegate.findFriendRequestsByRequester(requester);
+    }
+
+    @Override
+    public Set<FriendRequest> findFriendRequestsByRequested(User requested) {
+        return delegate.findFriendRequestsByRequested(requested);
+    }
+
+    @Override
+    public Optional<FriendRequest> findFriendRequestsByBothUsers(User requester, User requested) {
+        return delegate.findFriendRequestsByBothUsers(requester, requested);
+    }
+
+    @Override
+    public List<FriendRequestSummary> findOutgoingRequestSummaries(String requester) {
+        return delegate.findOutgoingRequestSummaries(requester);
+    }
+
+    @Override
+    public List<FriendRequestSummary> findIncomingRequestSummaries(String requested) {
+        return delegate.findIncomingRequestSummaries(requested);
+    }
+}
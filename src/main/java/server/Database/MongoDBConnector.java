@@ -1,39 +1,64 @@
 package server.Database;
 
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import org.bson.Document;
-import org.bson.conversions.Bson;
-import server.Model.*;
+import org.bson.codecs.configuration.CodecRegistries;
+import server.Model.Routine;
 import server.Utils.LoggerService;
 import server.Utils.PropertiesLoader;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MongoDBConnector {
 
     private MongoDatabase database;
     private MongoClient client;
     private static final String ROUTINE_COLLECTION = "routines";
+    public static final String OWNER_INDEX = "owner_id";
+    public static final String EXERCISE_INDEX = "exercise_id";
+    public static final String SETS_TYPE_INDEX = "setsType_id";
+    public static final String NAME_INDEX = "name";
+    private final int batchSize = PropertiesLoader.getIntProperty("database.mongodb.batchsize", 100);
 
     public void connectDatabase() {
         LoggerService.log("Starting connection with mongodb database...");
         String uri = PropertiesLoader.getProperty("database.mongodb.url");
         try {
             client = MongoClients.create(uri);
-            database = client.getDatabase(PropertiesLoader.getProperty("database.mongodb.name"));
+            database = client.getDatabase(PropertiesLoader.getProperty("database.mongodb.name"))
+                    .withCodecRegistry(CodecRegistries.fromRegistries(RoutineCodec.registry(), MongoClientSettings.getDefaultCodecRegistry()));
             LoggerService.log("MongoDB connection successful");
+            createIndexes();
 
         } catch (Exception e) {
             LoggerService.logerror("Error connecting to mongodb database");
         }
     }
 
+    // idempotent, so it runs on every start and adds the indexes missing
+    private void createIndexes() {
+        routines().createIndex(Indexes.ascending("owner", "_id"), new IndexOptions().name(OWNER_INDEX));
+        // multikey, with an entry for each exercise of a routine
+        routines().createIndex(Indexes.ascending("exerciseSets.exerciseName", "_id"), new IndexOptions().name(EXERCISE_INDEX));
+        routines().createIndex(Indexes.ascending("exerciseSets.setsType", "_id"), new IndexOptions().name(SETS_TYPE_INDEX));
+        routines().createIndex(Indexes.ascending("name"), new IndexOptions().name(NAME_INDEX));
+    }
+
     public void closeDatabase() {
         if (client != null) {
             client.close();
@@ -45,20 +70,15 @@ public class MongoDBConnector {
         if (database != null) {
             MongoCollection<Document> collection = database.getCollection(ROUTINE_COLLECTION);
             collection.drop();
+            createIndexes(); // dropped with the collection
         } else {
             LoggerService.logerror("Error dropping all routines - Connection not established");
         }
     }
 
     public boolean addRoutine(Routine routine) {
-        MongoCollection<Document> collection = database.getCollection(ROUTINE_COLLECTION);
-        Optional<Document> optionalDoc = routineToDocument(routine);
-        if (optionalDoc.isEmpty()) {
-            return false;
-        }
-
         try {
-            collection.insertOne(optionalDoc.get());
+            routines().insertOne(routine);
             return true;
         } catch (Exception e) {
             LoggerService.logerror("Error inserting routine: " + e.getMessage());
@@ -66,136 +86,23 @@ public class MongoDBConnector {
         }
     }
 
-
-
-    private Optional<Document> routineToDocument(Routine routine) {
-        try {
-            Document document = new Document();
-            document.append("name", routine.getRoutineName());
-            document.append("_id", routine.getId());
-
-            List<ExerciseSet> exerciseSets = routine.getExerciseSets();
-            List<Document> exerciseSetsDocument = new ArrayList<>();
-
-            if (exerciseSets != null && !exerciseSets.isEmpty()) {
-                for (ExerciseSet exerciseSet : exerciseSets) {
-                    Document exerciseSetDocument = new Document();
-                    Exercise exercise = exerciseSet.getExercise();
-
-                    if (exercise == null) continue;
-
-                    exerciseSetDocument.append("exerciseName", exercise.getExerciseName());
-                    exerciseSetDocument.append("setsType", exercise.getSetsType().name());
-
-                    List<Document> setsDocument = new ArrayList<>();
-                    for (Set set : exerciseSet.getSets()) {
-                        Document setDocument = new Document();
-                        setDocument.append("type", set.getSetType().name());
-                        switch (exercise.getSetsType()) {
-                            case TIME -> setDocument.append("duration", set.getDuration());
-                            case REPETITIONS -> setDocument.append("reps", set.getReps());
-                            case TIME_DISTANCE -> {
-                                setDocument.append("duration", set.getDuration());
-                                setDocument.append("distance", set.getDistance());
-                            }
-                            case WEIGHTED_REPETITIONS -> {
-                                setDocument.append("weight", set.getWeight());
-                                setDocument.append("reps", set.getReps());
-                            }
-                        }
-                        setsDocument.add(setDocument);
-                    }
-
-                    exerciseSetDocument.append("sets", setsDocument);
-                    exerciseSetsDocument.add(exerciseSetDocument);
-                }
-            }
-            document.append("exerciseSets", exerciseSetsDocument);
-
-            return Optional.of(document);
-        } catch (Exception e) {
-            LoggerService.logerror("Error transforming Routine to MongoDB Document");
-            return Optional.empty();
-        }
-    }
-
     public Optional<Routine> findById(int id) {
-        MongoCollection<Document> collection = database.getCollection(ROUTINE_COLLECTION);
         try {
-            Document document = collection.find(Filters.eq("_id", id)).first();
-            if (document == null) {
-                return Optional.empty();
-            }
-            Routine routine = documentToRoutine(document);
-            return Optional.of(routine);
-
+            return Optional.ofNullable(routines().find(Filters.eq("_id", id)).first());
         } catch (Exception e) {
             LoggerService.logerror("Error retrieving routine with id " + id);
             return Optional.empty();
         }
     }
 
-    private Routine documentToRoutine(Document document) {
-        int id = document.getInteger("_id");
-        String name = document.getString("name");
-        List<Document> exerciseSetsDocument = (List<Document>) document.get("exerciseSets");
-        List<ExerciseSet> exerciseSets = new ArrayList<>();
-
-        if (!exerciseSetsDocument.isEmpty()) {
-            for (Document exerciseSetDoc : exerciseSetsDocument) {
-                String exerciseName = exerciseSetDoc.getString("exerciseName");
-                String setsTypeStr = exerciseSetDoc.getString("setsType");
-                Exercise.SetsType setsType = Exercise.SetsType.valueOf(setsTypeStr);
-
-                Exercise exercise;
-                if (setsType == Exercise.SetsType.TIME_DISTANCE) {
-                    exercise = new CardioExercise();
-                    exercise.setExerciseName(exerciseName);
-                    exercise.setSetsType(setsType);
-                } else {
-                    exercise = new GymExercise(exerciseName, setsType, null, null, null, null, null, null);
-                }
-
-                List<Document> setsDocument = (List<Document>) exerciseSetDoc.get("sets");
-                List<server.Model.Set> sets = new ArrayList<>();
-
-                for (Document setDoc : setsDocument) {
-                    Set.SetType type = Set.SetType.valueOf(setDoc.getString("type"));
-                    server.Model.Set.SetBuilder set = Set.builder().setType(type);
-
-                    switch (setsType) {
-                        case TIME -> set.duration(setDoc.getInteger("duration"));
-                        case REPETITIONS -> set.reps(setDoc.getInteger("reps"));
-                        case TIME_DISTANCE -> {
-                            set.duration(setDoc.getInteger("duration"));
-                            set.distance(setDoc.getDouble("distance"));
-                        }
-                        case WEIGHTED_REPETITIONS -> {
-                            set.weight(setDoc.getDouble("weight"));
-                            set.reps(setDoc.getInteger("reps"));
-                        }
-                    }
-                    sets.add(set.build());
-                }
-
-                ExerciseSet exerciseSet = new ExerciseSet(exercise, sets);
-                exerciseSets.add(exerciseSet);
-            }
-        }
-
-
-        return new Routine(id, name, exerciseSets);
-    }
-
     public boolean updateRoutine(Routine routine) {
-        MongoCollection<Document> collection = database.getCollection(ROUTINE_COLLECTION);
-        Bson filter = Filters.eq("_id", routine.getId());
-        Document document = routineToDocument(routine).get();
-        if (document.isEmpty()) {
+        try {
+            routines().replaceOne(Filters.eq("_id", routine.getId()), routine);
+            return true;
+        } catch (Exception e) {
+            LoggerService.logerror("Error updating routine: " + e.getMessage());
             return false;
         }
-        collection.replaceOne(filter, document);
-        return true;
     }
 
     public boolean deleteRoutine(Routine routine) {
@@ -212,13 +119,35 @@ public class MongoDBConnector {
     }
 
     public List<Routine> findAllRoutines() {
-        List<Routine> routines = new ArrayList<>();
-        MongoCollection<Document> collection = database.getCollection(ROUTINE_COLLECTION);
+        return routines().find().batchSize(batchSize).into(new ArrayList<>());
+    }
+
+    /**
+     * Routines of the query read from a cursor, which fetches batchSize routines at a time while the stream is
+     * consumed, so only a batch is in memory. The stream must be closed to close the cursor.
+     */
+    public Stream<Routine> streamRoutines(RoutineQuery query) {
+        FindIterable<Routine> find = routines().find(query.filter())
+                .projection(query.projection())
+                .sort(query.sort())
+                .batchSize(query.getLimit() == RoutineQuery.NO_LIMIT ? batchSize : Math.min(batchSize, query.getLimit()));
+        if (query.getLimit() != RoutineQuery.NO_LIMIT) {
+            find.limit(query.getLimit());
+        }
+        MongoCursor<Routine> cursor = find.iterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
 
-        for (Document document : collection.find()) {
-            Routine routine = documentToRoutine(document);
-            routines.add(routine);
+    // routines are written and read with RoutineCodec, without going through Document
+    private MongoCollection<Routine> routines() {
+        if (database == null) {
+            throw new IllegalStateException("Connection with mongodb not established");
         }
-        return routines;
+        return database.getCollection(ROUTINE_COLLECTION, Routine.class);
     }
 }
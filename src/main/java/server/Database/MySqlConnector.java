@@ -1,45 +1,94 @@
 package server.Database;
 
 import server.Model.Exercise;
+import server.Model.ExercisePage;
 import server.Model.FriendRequest;
+import server.Model.FriendRequestSummary;
 import server.Model.GymExercise;
+import server.Model.LazyReference;
 import server.Model.User;
+import server.Model.UserReference;
 import server.Utils.LoggerService;
+import server.Utils.Metrics;
 import server.Utils.PropertiesLoader;
+import server.Utils.ResourceVersions;
 
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MySqlConnector implements UserRepository, ExerciseRepository {
 
-    private Connection connection;
+    private ConnectionPool pool;
+    private final int streamBatchSize = PropertiesLoader.getIntProperty("database.sql.streambatchsize", 100);
     private static final String USERS_TABLE_NAME = "users";
     private static final String FRIEND_REQUEST_TABLE_NAME = "friend_request";
     private static final String EXERCISES_TABLE_NAME = "exercises";
     private static final String FRIENDS_TABLE_NAME = "friends";
 
+    // Statements are cached per connection by their sql, so the sql is built once
+    private static final String FIND_USER_BY_USERNAME = String.format("SELECT * FROM %s WHERE username=?", USERS_TABLE_NAME);
+    private static final String FIND_ALL_USERS = String.format("SELECT * FROM %s", USERS_TABLE_NAME);
+    private static final String FIND_USERS_BY_USERNAMES = "SELECT * FROM " + USERS_TABLE_NAME + " WHERE username IN (%s)";
+    private static final String FIND_ALL_FRIENDSHIPS = String.format("SELECT username1, username2 FROM %s", FRIENDS_TABLE_NAME);
+    // friendships are stored once as (username1 < username2): each side of the union uses its own index
+    private static final String FIND_FRIENDSHIPS_OF_USERS = "SELECT username1, username2 FROM " + FRIENDS_TABLE_NAME
+            + " WHERE username1 IN (%s) UNION ALL SELECT username1, username2 FROM " + FRIENDS_TABLE_NAME + " WHERE username2 IN (%s)";
+    private static final String INSERT_USER = String.format("INSERT INTO %s VALUES(?,?,?)", USERS_TABLE_NAME);
+    private static final String INSERT_FRIEND_REQUEST = String.format("INSERT INTO %s VALUES(?,?,?)", FRIEND_REQUEST_TABLE_NAME);
+    private static final String DELETE_FRIEND_REQUEST = String.format("DELETE FROM %s WHERE requester=? AND requested=?", FRIEND_REQUEST_TABLE_NAME);
+    // the join leaves out requests of deleted users, and uses the primary key (requester) or idx_friend_request_requested
+    private static final String FIND_OUTGOING_REQUEST_SUMMARIES = String.format("SELECT fr.requested AS username, fr.date FROM %s fr "
+            + "JOIN %s u ON u.username = fr.requested WHERE fr.requester=?", FRIEND_REQUEST_TABLE_NAME, USERS_TABLE_NAME);
+    private static final String FIND_INCOMING_REQUEST_SUMMARIES = String.format("SELECT fr.requester AS username, fr.date FROM %s fr "
+            + "JOIN %s u ON u.username = fr.requester WHERE fr.requested=?", FRIEND_REQUEST_TABLE_NAME, USERS_TABLE_NAME);
+    private static final String FIND_FRIEND_REQUEST_BY_BOTH_USERS = String.format("SELECT * FROM %s WHERE requester=? AND requested=?", FRIEND_REQUEST_TABLE_NAME);
+    private static final String INSERT_FRIENDSHIP = String.format("INSERT IGNORE INTO %s (username1, username2) VALUES(?,?)", FRIENDS_TABLE_NAME);
+    private static final String DELETE_FRIENDSHIP = String.format("DELETE FROM %s WHERE username1=? AND username2=?", FRIENDS_TABLE_NAME);
+    private static final String FIND_FRIENDS = String.format("SELECT username2 AS friend FROM %s WHERE username1=? "
+            + "UNION ALL SELECT username1 FROM %s WHERE username2=?", FRIENDS_TABLE_NAME, FRIENDS_TABLE_NAME);
+    private static final String FIND_EXERCISES = String.format("SELECT * FROM %s WHERE 1=1", EXERCISES_TABLE_NAME);
+    private static final String FIND_EXERCISES_BY_NAMES = String.format("SELECT * FROM %s WHERE exercise_name IN (%%s)", EXERCISES_TABLE_NAME);
+    private static final int MAX_NAMES_PER_QUERY = 512;
+    private static final String SEARCH_EXERCISES = String.format("SELECT * FROM %s WHERE exercise_name LIKE ? ESCAPE '!' "
+            + "ORDER BY exercise_name LIMIT ?", EXERCISES_TABLE_NAME);
+    private static final String FIND_FRIENDSHIP = String.format("SELECT 1 FROM %s WHERE username1=? AND username2=?", FRIENDS_TABLE_NAME);
+
     public void connectDatabase() throws SQLException {
         LoggerService.log("Starting connection with mysql database...");
         String url = PropertiesLoader.getProperty("database.sql.url");
         String user = PropertiesLoader.getProperty("database.sql.username");
         String password = PropertiesLoader.getProperty("database.sql.password");
-        try {
-            connection = DriverManager.getConnection(url, user, password);
+        pool = ConnectionPool.forUrl(url, user, password,
+                PropertiesLoader.getIntProperty("database.sql.pool.maxsize", 16),
+                PropertiesLoader.getIntProperty("database.sql.pool.borrowtimeoutms", 5000),
+                PropertiesLoader.getIntProperty("database.sql.pool.idletimeoutms", 600_000),
+                PropertiesLoader.getIntProperty("database.sql.pool.maxlifetimems", 1_800_000),
+                PropertiesLoader.getIntProperty("database.sql.pool.statementcache", 64));
+        Metrics.register("mysqlPool", pool::stats);
+        try (Connection connection = pool.getConnection()) { // opens the first connection to check the database is reachable
             LoggerService.log("MySQL connection successful");
         } catch (SQLException e) {
             LoggerService.logerror("Error connecting to mysql database");
@@ -47,13 +96,9 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
     }
 
     public void closeDatabse() {
-        if (connection != null) {
-            try {
-                connection.close();
-                LoggerService.log("MySQL connection closed successfully");
-            } catch (SQLException e) {
-                LoggerService.logerror("Error closing connection");
-            }
+        if (pool != null) {
+            pool.close();
+            LoggerService.log("MySQL connection closed successfully");
         }
     }
 
@@ -61,41 +106,180 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
 
     @Override
     public Optional<User> findByUsername(String username) {
-        try {
-            PreparedStatement statement = connection.prepareStatement(String.format("SELECT * FROM %s WHERE username=?", USERS_TABLE_NAME));
-            statement.setString(1, username);
-            ResultSet rs = statement.executeQuery();
-            List<User> users = resultSetToUsers(rs);
-            return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
+        try (Connection connection = pool.getConnection()) {
+            return findByUsername(connection, username);
         } catch (SQLException e) {
             LoggerService.logerror("Error while finding user by username");
         }
         return Optional.empty();
     }
 
-    private List<User> resultSetToUsers(ResultSet rs) throws SQLException {
+    // Queries made while a connection is borrowed reuse it, borrowing a second one could wait for the pool forever
+    private Optional<User> findByUsername(Connection connection, String username) throws SQLException {
+        List<User> users;
+        try (PreparedStatement statement = connection.prepareStatement(FIND_USER_BY_USERNAME)) {
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                users = readUsers(rs);
+            }
+        }
+        if (users.isEmpty()) {
+            return Optional.empty();
+        }
+        assembleFriends(users, Map.of(username, findFriendsFromUser(connection, username)), Map.of());
+        return Optional.of(users.get(0));
+    }
+
+    /**
+     * Loads several users at once, with two queries whatever the number of users (rows and friendships)
+     * @return the users found, in no particular order
+     */
+    @Override
+    public List<User> findUsersByUsernames(Collection<String> usernames) {
+        return findUsersByUsernames(usernames, Map.of());
+    }
+
+    // known: users already in memory, the loaded users reference them instead of loading them again
+    private List<User> findUsersByUsernames(Collection<String> usernames, Map<String, User> known) {
+        if (usernames.isEmpty()) {
+            return List.of();
+        }
+        List<String> list = List.copyOf(new HashSet<>(usernames));
+        try (Connection connection = pool.getConnection()) {
+            List<User> users;
+            try (PreparedStatement statement = connection.prepareStatement(inList(FIND_USERS_BY_USERNAMES, list.size(), 1))) {
+                bindInList(statement, list, 1);
+                try (ResultSet rs = statement.executeQuery()) {
+                    users = readUsers(rs);
+                }
+            }
+            assembleFriends(users, findFriendshipsOfUsers(connection, list), known);
+            return users;
+        } catch (SQLException e) {
+            LoggerService.logerror("Error while finding users by username");
+        }
+        return List.of();
+    }
+
+    private List<User> readUsers(ResultSet rs) throws SQLException {
         List<User> users = new ArrayList<>();
         while (rs.next()) {
-            User user = new User();
-            String username = rs.getString("username");
-            user.setUsername(username);
-            Set<String> friends = findFriendsFromUser(user);
-            String password = rs.getString("password");
-            Calendar dateOfBirth = Calendar.getInstance();
-            dateOfBirth.setTime(rs.getDate("birth_date"));
-            User realUser = new User(username, password, dateOfBirth, friends.stream().map(friendUsername ->
-                    (Supplier<User>) () -> findByUsername(friendUsername).get()).collect(Collectors.toSet()));
-            users.add(realUser);
+            users.add(readUser(rs));
         }
         return users;
     }
 
+    private static User readUser(ResultSet rs) throws SQLException {
+        Calendar dateOfBirth = Calendar.getInstance();
+        dateOfBirth.setTime(rs.getDate("birth_date"));
+        return new User(rs.getString("username"), rs.getString("password"), dateOfBirth);
+    }
+
+    // friendships of any of the users, with one query
+    private static Map<String, Set<String>> findFriendshipsOfUsers(Connection connection, List<String> usernames) throws SQLException {
+        Map<String, Set<String>> friendships = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(inList(FIND_FRIENDSHIPS_OF_USERS, usernames.size(), 2))) {
+            bindInList(statement, usernames, 1);
+            bindInList(statement, usernames, inListSize(usernames.size()) + 1);
+            try (ResultSet rs = statement.executeQuery()) {
+                readFriendships(rs, friendships);
+            }
+        }
+        return friendships;
+    }
+
+    // adds each friendship (username1, username2) to the friends of both users
+    private static void readFriendships(ResultSet rs, Map<String, Set<String>> friendships) throws SQLException {
+        while (rs.next()) {
+            String username1 = rs.getString("username1");
+            String username2 = rs.getString("username2");
+            friendships.computeIfAbsent(username1, key -> new HashSet<>()).add(username2);
+            friendships.computeIfAbsent(username2, key -> new HashSet<>()).add(username1);
+        }
+    }
+
+    /**
+     * Links the friends of the users in memory. Friends loaded in the same batch (or known before) are referenced
+     * directly, the rest are loaded all together the first time one of them is needed.
+     */
+    private void assembleFriends(List<User> users, Map<String, Set<String>> friendships, Map<String, User> known) {
+        Map<String, User> loaded = new HashMap<>(known);
+        users.forEach(user -> loaded.put(user.getUsername(), user));
+        Set<String> missing = new HashSet<>();
+        friendships.forEach((username, friends) -> {
+            if (loaded.containsKey(username)) {
+                friends.stream().filter(friend -> !loaded.containsKey(friend)).forEach(missing::add);
+            }
+        });
+        FriendBatch batch = new FriendBatch(missing, loaded);
+        for (User user : users) {
+            Set<LazyReference<User>> references = new HashSet<>();
+            for (String friend : friendships.getOrDefault(user.getUsername(), Set.of())) {
+                User friendUser = loaded.get(friend);
+                references.add(friendUser != null ? new UserReference(friendUser) : new UserReference(friend, () -> batch.get(friend)));
+            }
+            user.setFriends(references);
+        }
+    }
+
+    // Friends not loaded yet of a batch of users, loaded with a single findUsersByUsernames when one is needed
+    private class FriendBatch {
+        private final Set<String> usernames;
+        private final Map<String, User> known;
+        private Map<String, User> users;
+
+        private FriendBatch(Set<String> usernames, Map<String, User> known) {
+            this.usernames = usernames;
+            this.known = known;
+        }
+
+        private synchronized User get(String username) {
+            if (users == null) {
+                users = new HashMap<>();
+                findUsersByUsernames(usernames, known).forEach(user -> users.put(user.getUsername(), user));
+            }
+            User user = users.get(username);
+            if (user == null) {
+                throw new NoSuchElementException("Friend not found: " + username);
+            }
+            return user;
+        }
+    }
+
+    /**
+     * IN lists are padded to the next power of two repeating the last value, so the number of different sql
+     * strings (and cached statements) stays small
+     */
+    static int inListSize(int size) {
+        return Math.max(1, Integer.highestOneBit(size - 1) << 1);
+    }
+
+    private static String inList(String sqlFormat, int size, int lists) {
+        String placeholders = String.join(",", Collections.nCopies(inListSize(size), "?"));
+        return String.format(sqlFormat, Collections.nCopies(lists, placeholders).toArray());
+    }
+
+    private static void bindInList(PreparedStatement statement, List<String> values, int firstIndex) throws SQLException {
+        int size = inListSize(values.size());
+        for (int i = 0; i < size; i++) {
+            statement.setString(firstIndex + i, values.get(Math.min(i, values.size() - 1)));
+        }
+    }
+
     @Override
     public List<User> findAllUsers() {
-        try {
-            Statement statement = connection.createStatement();
-            ResultSet rs = statement.executeQuery(String.format("SELECT * FROM %s", USERS_TABLE_NAME));
-            List<User> users = resultSetToUsers(rs);
+        try (Connection connection = pool.getConnection()) {
+            List<User> users;
+            try (PreparedStatement statement = connection.prepareStatement(FIND_ALL_USERS);
+                 ResultSet rs = statement.executeQuery()) {
+                users = readUsers(rs);
+            }
+            Map<String, Set<String>> friendships = new HashMap<>();
+            try (PreparedStatement statement = connection.prepareStatement(FIND_ALL_FRIENDSHIPS);
+                 ResultSet rs = statement.executeQuery()) {
+                readFriendships(rs, friendships);
+            }
+            assembleFriends(users, friendships, Map.of());
             return users;
         } catch (SQLException e) {
             LoggerService.logerror("Error while finding all users");
@@ -103,27 +287,106 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
         return List.of();
     }
 
-    public void addUser(User user) {
+    /**
+     * Reads the users through a forward-only cursor that fetches streamBatchSize rows at a time, and links the
+     * friends of each chunk with one query, so only one chunk is in memory whatever the number of users.
+     * The cursor needs useCursorFetch in the url, without it the driver reads all the rows at once.
+     * The stream keeps its connection until it is closed, and throws IllegalStateException if reading fails midway.
+     */
+    @Override
+    public Stream<User> streamAllUsers() {
+        Connection connection = null;
+        PreparedStatement statement = null;
         try {
-            PreparedStatement statement = connection.prepareStatement(String.format("INSERT INTO %s VALUES(?,?,?)", USERS_TABLE_NAME));
+            connection = pool.getConnection();
+            // not the cached statement, its fetch size would stay for the next findAllUsers
+            statement = connection.prepareStatement(FIND_ALL_USERS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(streamBatchSize);
+            QueryStats.record();
+            UserChunks users = new UserChunks(connection, statement.executeQuery());
+            Connection borrowed = connection;
+            PreparedStatement cursor = statement;
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> close(cursor, borrowed));
+        } catch (SQLException e) {
+            LoggerService.logerror("Error while streaming all users");
+            close(statement, connection);
+        }
+        return Stream.empty();
+    }
+
+    private static void close(PreparedStatement statement, Connection connection) {
+        try (connection; statement) { // the statement is closed before its connection goes back to the pool
+        } catch (SQLException e) {
+            LoggerService.logerror("Error while closing the users cursor");
+        }
+    }
+
+    // Users of a cursor, read a chunk at a time. The friendships of a chunk are read on the same connection
+    private class UserChunks implements Iterator<User> {
+        private final Connection connection;
+        private final ResultSet rs;
+        private final List<User> chunk = new ArrayList<>(streamBatchSize);
+        private int next;
+        private boolean exhausted;
+
+        private UserChunks(Connection connection, ResultSet rs) {
+            this.connection = connection;
+            this.rs = rs;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == chunk.size() && !exhausted) {
+                chunk.clear();
+                next = 0;
+                try {
+                    while (chunk.size() < streamBatchSize) {
+                        if (!rs.next()) {
+                            exhausted = true; // a forward-only result set may fail if moved past its end again
+                            break;
+                        }
+                        chunk.add(readUser(rs));
+                    }
+                    if (!chunk.isEmpty()) {
+                        assembleFriends(chunk, findFriendshipsOfUsers(connection, chunk.stream().map(User::getUsername).toList()), Map.of());
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Error while streaming all users", e);
+                }
+            }
+            return next < chunk.size();
+        }
+
+        @Override
+        public User next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk.get(next++);
+        }
+    }
+
+    public void addUser(User user) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_USER)) {
             statement.setString(1, user.getUsername());
             statement.setString(2, user.getPassword());
             Calendar dateOfBirth = user.getDateOfBirth();
             statement.setString(3, String.format("%d/%d/%d",
                     dateOfBirth.get(Calendar.YEAR), dateOfBirth.get(Calendar.MONTH) + 1, dateOfBirth.get(Calendar.DAY_OF_MONTH)));
             statement.executeUpdate();
+            ResourceVersions.bump(ResourceVersions.user(user.getUsername()));
         } catch (SQLException ex) {
             LoggerService.logerror("Error while inserting user into database");
         }
     }
 
     public void truncateTables() {
-        try {
-            Statement statement = connection.createStatement();
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
             statement.executeUpdate("TRUNCATE TABLE " + USERS_TABLE_NAME);
-            statement = connection.createStatement();
             statement.executeUpdate("TRUNCATE TABLE " + FRIEND_REQUEST_TABLE_NAME);
-            statement = connection.createStatement();
             statement.executeUpdate("TRUNCATE TABLE " + FRIENDS_TABLE_NAME);
         } catch (SQLException ex) {
             LoggerService.logerror("Error while truncating users tables");
@@ -134,13 +397,14 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
 
     @Override
     public void addFriendRequest(FriendRequest friendRequest) {
-        try {
-            PreparedStatement statement = connection.prepareStatement(String.format("INSERT INTO %s VALUES(?,?,?)", FRIEND_REQUEST_TABLE_NAME));
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(INSERT_FRIEND_REQUEST)) {
             statement.setString(1, friendRequest.getRequester().getUsername());
             statement.setString(2, friendRequest.getRequested().getUsername());
             Calendar date = friendRequest.getDate();
             statement.setTimestamp(3, new Timestamp(date.getTimeInMillis()));
             statement.executeUpdate();
+            bumpFriendRequestVersions(friendRequest);
         } catch (SQLException e) {
             LoggerService.logerror("Error while adding friend request");
         }
@@ -148,11 +412,12 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
 
     @Override
     public void deleteFriendRequest(FriendRequest friendRequest) {
-        try {
-            PreparedStatement statement = connection.prepareStatement(String.format("DELETE FROM %s WHERE requester=? AND requested=?", FRIEND_REQUEST_TABLE_NAME));
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(DELETE_FRIEND_REQUEST)) {
             statement.setString(1, friendRequest.getRequester().getUsername());
             statement.setString(2, friendRequest.getRequested().getUsername());
             statement.executeUpdate();
+            bumpFriendRequestVersions(friendRequest);
         } catch (SQLException e) {
             LoggerService.logerror("Error while deleting friend request");
         }
@@ -161,22 +426,10 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
     @Override
     public Set<FriendRequest> findFriendRequestsByRequester(User requester) {
         Set<FriendRequest> friendRequestSet = new HashSet<>();
-        try {
-            PreparedStatement statement = connection.prepareStatement(String.format("SELECT * FROM %s WHERE requester=?", FRIEND_REQUEST_TABLE_NAME));
-            statement.setString(1, requester.getUsername());
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                FriendRequest friendRequest = new FriendRequest();
-                Optional<User> requestedUser = findByUsername(rs.getString("requested"));
-                friendRequest.setRequester(requester);
-                friendRequest.setRequested(requestedUser.get());
-                Calendar date = Calendar.getInstance();
-                date.setTime(rs.getTimestamp("date"));
-                friendRequest.setDate(date);
-                friendRequestSet.add(friendRequest);
-            }
-        } catch (SQLException e) {
-            LoggerService.logerror("Error finding friend request from the requester");
+        List<FriendRequestSummary> summaries = findOutgoingRequestSummaries(requester.getUsername());
+        Map<String, User> requestedUsers = usersOf(summaries);
+        for (FriendRequestSummary summary : summaries) {
+            friendRequestSet.add(new FriendRequest(requester, requestedUsers.get(summary.username()), summary.date()));
         }
         return friendRequestSet;
     }
@@ -184,42 +437,74 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
     @Override
     public Set<FriendRequest> findFriendRequestsByRequested(User requested) {
         Set<FriendRequest> friendRequestSet = new HashSet<>();
+        List<FriendRequestSummary> summaries = findIncomingRequestSummaries(requested.getUsername());
+        Map<String, User> requesterUsers = usersOf(summaries);
+        for (FriendRequestSummary summary : summaries) {
+            friendRequestSet.add(new FriendRequest(requesterUsers.get(summary.username()), requested, summary.date()));
+        }
+        return friendRequestSet;
+    }
+
+    // loads the counterparts of the requests all at once
+    private Map<String, User> usersOf(List<FriendRequestSummary> summaries) {
+        Map<String, User> users = new HashMap<>();
+        findUsersByUsernames(summaries.stream().map(FriendRequestSummary::username).toList())
+                .forEach(user -> users.put(user.getUsername(), user));
+        return users;
+    }
+
+    @Override
+    public List<FriendRequestSummary> findOutgoingRequestSummaries(String requester) {
         try {
-            PreparedStatement statement = connection.prepareStatement(String.format("SELECT * FROM %s WHERE requested=?", FRIEND_REQUEST_TABLE_NAME));
-            statement.setString(1, requested.getUsername());
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                FriendRequest friendRequest = new FriendRequest();
-                Optional<User> requesterUser = findByUsername(rs.getString("requester"));
-                friendRequest.setRequester(requesterUser.get());
-                friendRequest.setRequested(requested);
-                Calendar date = Calendar.getInstance();
-                date.setTime(rs.getTimestamp("date"));
-                friendRequest.setDate(date);
-                friendRequestSet.add(friendRequest);
-            }
+            return findRequestSummaries(FIND_OUTGOING_REQUEST_SUMMARIES, requester);
+        } catch (SQLException e) {
+            LoggerService.logerror("Error finding friend request from the requester");
+        }
+        return List.of();
+    }
+
+    @Override
+    public List<FriendRequestSummary> findIncomingRequestSummaries(String requested) {
+        try {
+            return findRequestSummaries(FIND_INCOMING_REQUEST_SUMMARIES, requested);
         } catch (SQLException e) {
             LoggerService.logerror("Error finding friend request from the requested");
         }
-        return friendRequestSet;
+        return List.of();
+    }
+
+    private List<FriendRequestSummary> findRequestSummaries(String sql, String username) throws SQLException {
+        List<FriendRequestSummary> summaries = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Calendar date = Calendar.getInstance();
+                    date.setTime(rs.getTimestamp("date"));
+                    summaries.add(new FriendRequestSummary(rs.getString("username"), date));
+                }
+            }
+        }
+        return summaries;
     }
 
     @Override
     public Optional<FriendRequest> findFriendRequestsByBothUsers(User requester, User requested) {
-        try {
-            PreparedStatement statement = connection.prepareStatement(String.format("SELECT * FROM %s WHERE requester=? AND requested=?",
-                    FRIEND_REQUEST_TABLE_NAME));
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND_FRIEND_REQUEST_BY_BOTH_USERS)) {
             statement.setString(1, requester.getUsername());
             statement.setString(2, requested.getUsername());
-            ResultSet rs = statement.executeQuery();
-            while (rs.next()) {
-                FriendRequest friendRequest = new FriendRequest();
-                friendRequest.setRequester(requester);
-                friendRequest.setRequested(requested);
-                Calendar date = Calendar.getInstance();
-                date.setTime(rs.getTimestamp("date"));
-                friendRequest.setDate(date);
-                return Optional.of(friendRequest);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    FriendRequest friendRequest = new FriendRequest();
+                    friendRequest.setRequester(requester);
+                    friendRequest.setRequested(requested);
+                    Calendar date = Calendar.getInstance();
+                    date.setTime(rs.getTimestamp("date"));
+                    friendRequest.setDate(date);
+                    return Optional.of(friendRequest);
+                }
             }
         } catch (SQLException e) {
             LoggerService.logerror("Error finding friend request from both users");
@@ -231,13 +516,14 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
 
     @Override
     public void addFriend(FriendRequest friendRequest) {
-        try {
-            if (!friendshipExists(friendRequest)) {
-                PreparedStatement statement = connection.prepareStatement(String.format("INSERT INTO %s VALUES(?,?)",
-                        FRIENDS_TABLE_NAME));
-                statement.setString(1, friendRequest.getRequester().getUsername());
-                statement.setString(2, friendRequest.getRequested().getUsername());
-                statement.executeUpdate();
+        try (Connection connection = pool.getConnection()) {
+            int inserted;
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_FRIENDSHIP)) {
+                bindFriendship(statement, friendRequest);
+                inserted = statement.executeUpdate(); // 0 if they were already friends
+            }
+            if (inserted > 0) {
+                bumpFriendshipVersions(connection, friendRequest);
             }
         } catch (SQLException e) {
             LoggerService.logerror("Error while accepting friend request");
@@ -246,43 +532,62 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
 
     @Override
     public void deleteFriend(FriendRequest friendRequest) {
-        try {
-            PreparedStatement statement = connection.prepareStatement(
-                String.format("DELETE FROM %s WHERE (username1=? AND username2=?) OR (username1=? AND username2=?)", FRIENDS_TABLE_NAME)
-            );
-            statement.setString(1, friendRequest.getRequester().getUsername());
-            statement.setString(2, friendRequest.getRequested().getUsername());
-
-            statement.setString(3, friendRequest.getRequested().getUsername());
-            statement.setString(4, friendRequest.getRequester().getUsername());
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(DELETE_FRIENDSHIP)) {
+            bindFriendship(statement, friendRequest);
             statement.executeUpdate();
+            bumpFriendshipVersions(connection, friendRequest);
         } catch (SQLException e) {
             LoggerService.logerror("Error while deleting friend request");
         }
     }
 
+    /**
+     * Binds the two users of the friendship in the order they are stored: the lowest username first,
+     * comparing the utf-8 bytes like the utf8mb4_bin collation of the table
+     */
+    private static void bindFriendship(PreparedStatement statement, FriendRequest friendRequest) throws SQLException {
+        String requester = friendRequest.getRequester().getUsername();
+        String requested = friendRequest.getRequested().getUsername();
+        boolean ordered = Arrays.compareUnsigned(requester.getBytes(StandardCharsets.UTF_8), requested.getBytes(StandardCharsets.UTF_8)) < 0;
+        statement.setString(1, ordered ? requester : requested);
+        statement.setString(2, ordered ? requested : requester);
+    }
+
+    private void bumpFriendRequestVersions(FriendRequest friendRequest) {
+        ResourceVersions.bump(ResourceVersions.outgoingRequests(friendRequest.getRequester().getUsername()),
+                ResourceVersions.incomingRequests(friendRequest.getRequested().getUsername()));
+    }
+
+    // Both users change, and so do the friend lists where they appear with their own friends
+    private void bumpFriendshipVersions(Connection connection, FriendRequest friendRequest) throws SQLException {
+        for (User user : List.of(friendRequest.getRequester(), friendRequest.getRequested())) {
+            ResourceVersions.bump(ResourceVersions.user(user.getUsername()), ResourceVersions.friends(user.getUsername()));
+            findFriendsFromUser(connection, user.getUsername()).forEach(friend -> ResourceVersions.bump(ResourceVersions.friends(friend)));
+        }
+    }
+
     public Set<String> findFriendsFromUser(User friend) {
-        Set<String> friends = new HashSet<>();
-        try {
-            PreparedStatement statement = connection.prepareStatement(String.format("SELECT username1, username2 FROM %s WHERE username1=? OR username2=?",
-                    FRIENDS_TABLE_NAME));
+        try (Connection connection = pool.getConnection()) {
+            return findFriendsFromUser(connection, friend.getUsername());
+        } catch (SQLException e) {
+            LoggerService.logerror("Error finding friends from a user");
+        }
+        return new HashSet<>();
+    }
 
-            statement.setString(1, friend.getUsername());
-            statement.setString(2, friend.getUsername());
+    private Set<String> findFriendsFromUser(Connection connection, String username) throws SQLException {
+        Set<String> friends = new HashSet<>();
+        try (PreparedStatement statement = connection.prepareStatement(FIND_FRIENDS)) {
 
-            ResultSet rs = statement.executeQuery();
+            statement.setString(1, username);
+            statement.setString(2, username);
 
-            while (rs.next()) {
-                String username1 = rs.getString("username1");
-                String username2 = rs.getString("username2");
-                if (username1.equals(friend.getUsername())) {
-                    friends.add(username2);
-                } else {
-                    friends.add(username1);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    friends.add(rs.getString("friend"));
                 }
             }
-        } catch (SQLException e) {
-            LoggerService.logerror("Error finding friends from a user");
         }
         return friends;
     }
@@ -298,6 +603,38 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
         }
     }
 
+    /**
+     * One query for every MAX_NAMES_PER_QUERY names. The table compares names ignoring case and accents,
+     * so the rows are matched back to the names asked in the same way
+     */
+    @Override
+    public Map<String, Exercise> findExercisesByNames(Collection<String> exerciseNames) {
+        Map<String, List<String>> askedByKey = new HashMap<>();
+        for (String exerciseName : exerciseNames) {
+            askedByKey.computeIfAbsent(ExerciseSearchIndex.normalize(exerciseName), key -> new ArrayList<>()).add(exerciseName);
+        }
+        List<String> names = askedByKey.values().stream().map(List::getFirst).toList();
+        Map<String, Exercise> found = new HashMap<>();
+        try (Connection connection = pool.getConnection()) {
+            for (int from = 0; from < names.size(); from += MAX_NAMES_PER_QUERY) {
+                List<String> chunk = names.subList(from, Math.min(names.size(), from + MAX_NAMES_PER_QUERY));
+                try (PreparedStatement statement = connection.prepareStatement(inList(FIND_EXERCISES_BY_NAMES, chunk.size(), 1))) {
+                    bindInList(statement, chunk, 1);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            Exercise exercise = readExercise(rs);
+                            askedByKey.getOrDefault(ExerciseSearchIndex.normalize(exercise.getExerciseName()), List.of())
+                                    .forEach(asked -> found.put(asked, exercise));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            LoggerService.logerror("Error while retrieving exercises by name");
+        }
+        return found;
+    }
+
     @Override
     public Set<Exercise> findAllExercises() {
         return findExerciseWithFilters(Map.of());
@@ -305,31 +642,29 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
 
     @Override
     public Set<Exercise> findExerciseWithFilters(Map<String, String> filters) {
-        try {
+        try (Connection connection = pool.getConnection()) {
             Set<Exercise> set = new HashSet<>();
-            String query = String.format("SELECT * FROM %s WHERE 1=1", EXERCISES_TABLE_NAME);
+            // sorted, so the same filters always give the same sql and reuse its cached statement
+            StringBuilder query = new StringBuilder(FIND_EXERCISES);
             List<String> filterList = new ArrayList<>();
-            for (String filter : filters.keySet()) {
-                query = query + String.format(" AND %s = ?", filter);
-                filterList.add(filters.get(filter));
-            }
-            PreparedStatement preparedStatement = connection.prepareStatement(query);
-            for (int i = 0; i < filterList.size(); i++) {
-                preparedStatement.setString(i + 1, filterList.get(i));
+            for (Map.Entry<String, String> filter : new TreeMap<>(filters).entrySet()) {
+                Optional<ExerciseColumn> column = ExerciseColumn.fromColumn(filter.getKey());
+                if (column.isEmpty()) {
+                    LoggerService.logerror("Unknown exercise filter " + filter.getKey());
+                    return Set.of();
+                }
+                query.append(" AND ").append(column.get().getColumn()).append(" = ?");
+                filterList.add(filter.getValue());
             }
-            ResultSet rs = preparedStatement.executeQuery();
-            while (rs.next()) {
-                String exerciseName = rs.getString("exercise_name");
-                Exercise.SetsType setsType = Exercise.SetsType.valueOf(rs.getString("sets_type").toUpperCase());
-                GymExercise.DifficultyLevel difficultyLevel = GymExercise.DifficultyLevel.valueOf(rs.getString("difficulty").toUpperCase().replace(" ", "_"));
-                GymExercise.MuscleGroup muscleGroup = GymExercise.MuscleGroup.valueOf(rs.getString("muscle_group").toUpperCase().replace(" ", "_"));
-                GymExercise.Equipment equipment = GymExercise.Equipment.valueOf(rs.getString("equipment").toUpperCase().replace(" ", "_"));
-                GymExercise.SingleArm singleArm = GymExercise.SingleArm.valueOf(rs.getString("single_double_arm").toUpperCase().replace(" ", "_"));
-                GymExercise.Grip grip = GymExercise.Grip.valueOf(rs.getString("grip").toUpperCase().replace(" ", "_"));
-                GymExercise.BodyRegion bodyRegion = GymExercise.BodyRegion.valueOf(rs.getString("body_region").toUpperCase()
-                        .replace(" ", "_").replace("*", ""));
-                GymExercise exercise = new GymExercise(exerciseName, setsType, difficultyLevel, muscleGroup, equipment, singleArm, grip, bodyRegion);
-                set.add(exercise);
+            try (PreparedStatement preparedStatement = connection.prepareStatement(query.toString())) {
+                for (int i = 0; i < filterList.size(); i++) {
+                    preparedStatement.setString(i + 1, filterList.get(i));
+                }
+                try (ResultSet rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        set.add(readExercise(rs));
+                    }
+                }
             }
             return set;
         } catch (SQLException ex) {
@@ -338,18 +673,80 @@ public class MySqlConnector implements UserRepository, ExerciseRepository {
         }
     }
 
+    @Override
+    public ExercisePage findExercises(ExerciseQuery query) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(query.sql(EXERCISES_TABLE_NAME))) {
+            query.bind(statement);
+            List<Exercise> exercises = new ArrayList<>(Math.min(query.getLimit(), 64));
+            boolean more = false;
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    if (exercises.size() == query.getLimit()) {
+                        more = true; // the extra row read to know if there is a next page
+                        break;
+                    }
+                    exercises.add(readExercise(rs));
+                }
+            }
+            return new ExercisePage(exercises, more ? exercises.getLast().getExerciseName() : null);
+        } catch (SQLException ex) {
+            LoggerService.logerror("Error while retrieving a page of exercises");
+            return new ExercisePage(List.of(), null);
+        }
+    }
+
+    /**
+     * Exercises whose name starts with the text, the catalog in memory ({@link ExerciseCatalog}) also finds partial
+     * words and typos
+     */
+    @Override
+    public List<Exercise> searchExercises(String text, int limit) {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(SEARCH_EXERCISES)) {
+            statement.setString(1, text.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%");
+            statement.setInt(2, limit);
+            List<Exercise> exercises = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    exercises.add(readExercise(rs));
+                }
+            }
+            return exercises;
+        } catch (SQLException ex) {
+            LoggerService.logerror("Error while searching exercises");
+            return List.of();
+        }
+    }
+
+    private static GymExercise readExercise(ResultSet rs) throws SQLException {
+        String exerciseName = rs.getString("exercise_name");
+        Exercise.SetsType setsType = Exercise.SetsType.valueOf(rs.getString("sets_type").toUpperCase());
+        GymExercise.DifficultyLevel difficultyLevel = GymExercise.DifficultyLevel.valueOf(rs.getString("difficulty").toUpperCase().replace(" ", "_"));
+        GymExercise.MuscleGroup muscleGroup = GymExercise.MuscleGroup.valueOf(rs.getString("muscle_group").toUpperCase().replace(" ", "_"));
+        GymExercise.Equipment equipment = GymExercise.Equipment.valueOf(rs.getString("equipment").toUpperCase().replace(" ", "_"));
+        GymExercise.SingleArm singleArm = GymExercise.SingleArm.valueOf(rs.getString("single_double_arm").toUpperCase().replace(" ", "_"));
+        GymExercise.Grip grip = GymExercise.Grip.valueOf(rs.getString("grip").toUpperCase().replace(" ", "_"));
+        GymExercise.BodyRegion bodyRegion = GymExercise.BodyRegion.valueOf(rs.getString("body_region").toUpperCase()
+                .replace(" ", "_").replace("*", ""));
+        return new GymExercise(exerciseName, setsType, difficultyLevel, muscleGroup, equipment, singleArm, grip, bodyRegion);
+    }
+
     public boolean friendshipExists(FriendRequest friendRequest){
-        try {
-            PreparedStatement statement = connection.prepareStatement(String.format("SELECT * FROM %s WHERE (username1=? AND username2=?) OR (username1=? AND username2=?)", FRIENDS_TABLE_NAME));
-            statement.setString(1, friendRequest.getRequester().getUsername());
-            statement.setString(2, friendRequest.getRequested().getUsername());
-            statement.setString(3, friendRequest.getRequested().getUsername());
-            statement.setString(4, friendRequest.getRequester().getUsername());
-            ResultSet rs = statement.executeQuery();
-            return rs.next(); // Exists
+        try (Connection connection = pool.getConnection()) {
+            return friendshipExists(connection, friendRequest);
         } catch (SQLException e) {
             LoggerService.logerror("Error while finding if friendship exists");
         }
         return false;
     }
+
+    private boolean friendshipExists(Connection connection, FriendRequest friendRequest) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(FIND_FRIENDSHIP)) {
+            bindFriendship(statement, friendRequest);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next(); // Exists
+            }
+        }
+    }
 }
@@ -0,0 +1,26 @@
+package server.Database;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the statements executed through the {@link ConnectionPool}, in total and by the current thread.
+ * Each request runs on its own thread, so the thread count tells how many queries a piece of code needed.
+ */
+public class QueryStats {
+
+    private static final AtomicLong total = new AtomicLong();
+    private static final ThreadLocal<long[]> byThread = ThreadLocal.withInitial(() -> new long[1]);
+
+    static void record() {
+        total.incrementAndGet();
+        byThread.get()[0]++;
+    }
+
+    public static long total() {
+        return total.get();
+    }
+
+    public static long currentThread() {
+        return byThread.get()[0];
+    }
+}
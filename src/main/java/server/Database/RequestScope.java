@@ -0,0 +1,122 @@
+package server.Database;
+
+import server.Model.User;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Unit of work of a request: opened by the router around each endpoint and bound to its thread, so the
+ * repositories (and the services using them) share it without passing it around.
+ * - It is the identity map of the users read during the request, see {@link IdentityMapUserRepository}
+ * - It counts the queries the request executed, reported by route as queriesPerRequest in /metrics
+ * Scopes are not shared between threads, so it needs no synchronization.
+ */
+public class RequestScope implements AutoCloseable {
+
+    private static final ThreadLocal<RequestScope> current = new ThreadLocal<>();
+    private static final Map<String, RouteQueries> byRoute = new ConcurrentHashMap<>();
+
+    private final String route;
+    private final long queriesBefore;
+    private final boolean nested;
+    private final Map<String, Optional<User>> users;
+
+    private static class RouteQueries {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong queries = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+    }
+
+    private RequestScope(String route, boolean nested, Map<String, Optional<User>> users) {
+        this.route = route;
+        this.nested = nested;
+        this.users = users;
+        this.queriesBefore = QueryStats.currentThread();
+    }
+
+    /**
+     * Opens the scope of a request of the given route on this thread. If one is already open, its users are
+     * shared and closing this one doesn't end it.
+     */
+    public static RequestScope open(String route) {
+        RequestScope outer = current.get();
+        if (outer != null) {
+            return new RequestScope(route, true, outer.users);
+        }
+        RequestScope scope = new RequestScope(route, false, new HashMap<>());
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return the scope open on this thread, null outside a request
+     */
+    public static RequestScope current() {
+        return current.get();
+    }
+
+    /**
+     * @return the user already read in this request, or reads it once with the loader
+     */
+    Optional<User> user(String username, Supplier<Optional<User>> loader) {
+        Optional<User> user = users.get(username);
+        if (user == null) {
+            user = loader.get();
+            users.put(username, user);
+        }
+        return user;
+    }
+
+    Optional<User> cachedUser(String username) {
+        return users.get(username);
+    }
+
+    void putUser(String username, Optional<User> user) {
+        users.put(username, user);
+    }
+
+    void forget(String username) {
+        users.remove(username);
+    }
+
+    /**
+     * @return queries executed since the scope was opened
+     */
+    public long queries() {
+        return QueryStats.currentThread() - queriesBefore;
+    }
+
+    @Override
+    public void close() {
+        if (nested) {
+            return;
+        }
+        current.remove();
+        RouteQueries stats = byRoute.computeIfAbsent(route, key -> new RouteQueries());
+        long queries = queries();
+        stats.requests.incrementAndGet();
+        stats.queries.addAndGet(queries);
+        stats.max.accumulateAndGet(queries, Math::max);
+    }
+
+    /**
+     * Requests, mean and max queries per request of each route
+     */
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        byRoute.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
+            long requests = entry.getValue().requests.get();
+            stats.put(entry.getKey(), Map.of(
+                    "requests", requests,
+                    "meanQueries", requests == 0 ? 0.0 : (double) entry.getValue().queries.get() / requests,
+                    "maxQueries", entry.getValue().max.get()));
+        });
+        return stats;
+    }
+}
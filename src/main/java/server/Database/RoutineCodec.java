@@ -0,0 +1,103 @@
+package server.Database;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import server.Model.ExerciseSet;
+import server.Model.Routine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a routine as {name, _id, owner, exerciseSets} straight to the BSON of the driver, without building
+ * a Document tree first. Exercise sets without exercise are not written, nor the owner if it has none.
+ */
+public class RoutineCodec implements Codec<Routine> {
+
+    private static final String ID = "_id";
+    private static final String NAME = "name";
+    private static final String EXERCISE_SETS = "exerciseSets";
+    private static final String OWNER = "owner";
+
+    private final ExerciseSetCodec exerciseSetCodec;
+
+    public RoutineCodec(ExerciseSetCodec exerciseSetCodec) {
+        this.exerciseSetCodec = exerciseSetCodec;
+    }
+
+    /**
+     * @return registry with the codecs of the routines, their exercise sets and sets
+     */
+    public static CodecRegistry registry() {
+        SetCodec setCodec = new SetCodec();
+        ExerciseSetCodec exerciseSetCodec = new ExerciseSetCodec(setCodec);
+        return CodecRegistries.fromCodecs(new RoutineCodec(exerciseSetCodec), exerciseSetCodec, setCodec);
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Routine routine, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (routine.getRoutineName() == null) {
+            writer.writeNull(NAME);
+        } else {
+            writer.writeString(NAME, routine.getRoutineName());
+        }
+        writer.writeInt32(ID, routine.getId());
+        if (routine.getOwner() != null) {
+            writer.writeString(OWNER, routine.getOwner());
+        }
+        writer.writeStartArray(EXERCISE_SETS);
+        if (routine.getExerciseSets() != null) {
+            for (ExerciseSet exerciseSet : routine.getExerciseSets()) {
+                if (exerciseSet.getExercise() != null) {
+                    exerciseSetCodec.encode(writer, exerciseSet, encoderContext);
+                }
+            }
+        }
+        writer.writeEndArray();
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Routine decode(BsonReader reader, DecoderContext decoderContext) {
+        int id = 0;
+        String name = null;
+        String owner = null;
+        List<ExerciseSet> exerciseSets = new ArrayList<>();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case ID -> id = SetCodec.readInt(reader);
+                case NAME -> {
+                    if (reader.getCurrentBsonType() == BsonType.NULL) {
+                        reader.readNull();
+                    } else {
+                        name = reader.readString();
+                    }
+                }
+                case OWNER -> owner = reader.readString();
+                case EXERCISE_SETS -> {
+                    reader.readStartArray();
+                    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                        exerciseSets.add(exerciseSetCodec.decode(reader, decoderContext));
+                    }
+                    reader.readEndArray();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return new Routine(id, name, exerciseSets, owner);
+    }
+
+    @Override
+    public Class<Routine> getEncoderClass() {
+        return Routine.class;
+    }
+}
@@ -1,21 +1,42 @@
 package server.Database;
 
 import server.Model.Exercise;
+import server.Model.ExerciseSet;
 import server.Model.Routine;
 import server.Model.User;
+import server.Utils.LoggerService;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class RoutineConnector implements RoutineRepository {
 
+    public static final String EXERCISE_NAME_FILTER = "exercise_name";
+    public static final String SETS_TYPE_FILTER = "sets_type";
+    public static final String MUSCLE_GROUP_FILTER = "muscle_group";
+    public static final String NAME_PREFIX_FILTER = "name_prefix";
+
     private MongoDBConnector mongoConnector;
-    private MySqlConnector mysqlConnector;
+    private ExerciseRepository exerciseRepository;
 
-    public RoutineConnector(MongoDBConnector mongoConnector, MySqlConnector mysqlConnector) {
+    /**
+     * @param exerciseRepository where the exercises of the routines are completed from, an {@link ExerciseCatalog}
+     *                           answers from memory
+     */
+    public RoutineConnector(MongoDBConnector mongoConnector, ExerciseRepository exerciseRepository) {
         this.mongoConnector = mongoConnector;
-        this.mysqlConnector = mysqlConnector;
+        this.exerciseRepository = exerciseRepository;
     }
 
     @Override
@@ -25,17 +46,9 @@ public class RoutineConnector implements RoutineRepository {
 
     @Override
     public Optional<Routine> findById(int id) {
-        Optional<Routine> routineOptional = mongoConnector.findById(id);
-        if (routineOptional.isEmpty()) {
-            return routineOptional;
-        }
-        Routine routine = routineOptional.get();
-        routine.getExerciseSets().forEach(exerciseSet -> {
-            Exercise temporalExercise = exerciseSet.getExercise();
-            Exercise exercise = mysqlConnector.findExerciseByName(temporalExercise.getExerciseName()).orElseThrow();
-            exerciseSet.setExercise(exercise);
-        });
-        return Optional.of(routine);
+        Optional<Routine> routine = mongoConnector.findById(id);
+        routine.ifPresent(found -> hydrate(List.of(found)));
+        return routine;
     }
 
     @Override
@@ -51,22 +64,139 @@ public class RoutineConnector implements RoutineRepository {
     @Override
     public List<Routine> findAllRoutines() {
         List<Routine> routines = mongoConnector.findAllRoutines();
-        routines.forEach(routine -> {
-            routine.getExerciseSets().forEach(exerciseSet -> {
-                Exercise exercise = mysqlConnector.findExerciseByName(exerciseSet.getExercise().getExerciseName()).orElseThrow();
-                exerciseSet.setExercise(exercise);
-            });
-        });
+        hydrate(routines);
         return routines;
     }
 
+    /**
+     * The exercises are completed for each batch of routines read from the cursor, so a batch is in memory at a time
+     */
+    @Override
+    public Stream<Routine> streamRoutines(RoutineQuery query) {
+        Stream<Routine> routines = mongoConnector.streamRoutines(query);
+        if (!query.includes(RoutineQuery.Field.EXERCISE_SETS)) {
+            return routines;
+        }
+        Iterator<Routine> source = routines.iterator();
+        int batchSize = Math.max(1, mongoConnector.getBatchSize());
+        Iterator<Routine> hydrated = new Iterator<>() {
+            private final List<Routine> batch = new ArrayList<>(batchSize);
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == batch.size()) {
+                    batch.clear();
+                    next = 0;
+                    while (batch.size() < batchSize && source.hasNext()) {
+                        batch.add(source.next());
+                    }
+                    hydrate(batch);
+                }
+                return next < batch.size();
+            }
+
+            @Override
+            public Routine next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return batch.get(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(hydrated, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(routines::close);
+    }
+
+    /**
+     * Replaces the exercises read with the routines (only name and sets type) by the ones of the catalog,
+     * looking up the different names of all the routines at once, so routines using the same exercise share it.
+     * An exercise no longer in the catalog keeps what was read with the routine.
+     */
+    private void hydrate(List<Routine> routines) {
+        Set<String> names = new HashSet<>();
+        for (Routine routine : routines) {
+            for (ExerciseSet exerciseSet : routine.getExerciseSets()) {
+                names.add(exerciseSet.getExercise().getExerciseName());
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+        Map<String, Exercise> exercises = exerciseRepository.findExercisesByNames(names);
+        for (Routine routine : routines) {
+            for (ExerciseSet exerciseSet : routine.getExerciseSets()) {
+                Exercise exercise = exercises.get(exerciseSet.getExercise().getExerciseName());
+                if (exercise != null) {
+                    exerciseSet.setExercise(exercise);
+                }
+            }
+        }
+        if (exercises.size() < names.size()) {
+            names.removeAll(exercises.keySet());
+            LoggerService.logerror("Exercises of routines not found in the catalog: " + names);
+        }
+    }
+
     @Override
     public List<Routine> findRoutinesCreatedByUser(User user) {
-        return null;
+        return findRoutines(RoutineQuery.builder().owner(user.getUsername()).build());
+    }
+
+    @Override
+    public List<Routine> findRoutinesCreatedByUser(User user, Integer after, int limit) {
+        return findRoutines(RoutineQuery.builder().owner(user.getUsername()).after(after).limit(limit).build());
+    }
+
+    private List<Routine> findRoutines(RoutineQuery query) {
+        try (Stream<Routine> routines = streamRoutines(query)) {
+            return routines.toList();
+        }
     }
 
+    /**
+     * Each filter is a condition of a single query. Routines only store the names of their exercises, so the
+     * muscle group is turned into the names of its exercises in the catalog, and the name of an exercise is
+     * written as the catalog has it.
+     */
     @Override
-    public Optional<Routine> findRoutinesWithFilters(Map<String, String> filter) {
+    public List<Routine> findRoutinesWithFilters(Map<String, String> filters, Integer after, int limit) {
+        RoutineQuery.Builder query = RoutineQuery.builder().after(after).limit(limit);
+        boolean matchesNone = false;
+        for (Map.Entry<String, String> filter : filters.entrySet()) {
+            String value = filter.getValue();
+            switch (filter.getKey()) {
+                case EXERCISE_NAME_FILTER -> query.containsExercise(List.of(exerciseRepository.findExerciseByName(value)
+                        .map(Exercise::getExerciseName).orElse(value)));
+                case SETS_TYPE_FILTER -> {
+                    Optional<Exercise.SetsType> setsType = parseSetsType(value);
+                    setsType.ifPresent(query::setsType);
+                    matchesNone |= setsType.isEmpty();
+                }
+                case MUSCLE_GROUP_FILTER -> {
+                    Set<Exercise> exercises = exerciseRepository.findExerciseWithFilters(
+                            Map.of(ExerciseColumn.MUSCLE_GROUP.getColumn(), value));
+                    if (exercises.isEmpty()) {
+                        matchesNone = true;
+                    } else {
+                        query.containsExercise(exercises.stream().map(Exercise::getExerciseName).toList());
+                    }
+                }
+                case NAME_PREFIX_FILTER -> query.namePrefix(value);
+                default -> throw new IllegalArgumentException("Unknown filter " + filter.getKey());
+            }
+        }
+        return matchesNone ? List.of() : findRoutines(query.build());
+    }
+
+    // values are written like "Weighted Repetitions" or "WEIGHTED_REPETITIONS"
+    private static Optional<Exercise.SetsType> parseSetsType(String value) {
+        String name = value.trim().toUpperCase(Locale.ROOT).replace(" ", "_");
+        for (Exercise.SetsType setsType : Exercise.SetsType.values()) {
+            if (setsType.name().equals(name)) {
+                return Optional.of(setsType);
+            }
+        }
         return Optional.empty();
     }
 
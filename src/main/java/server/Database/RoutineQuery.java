@@ -0,0 +1,243 @@
+package server.Database;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.conversions.Bson;
+import server.Model.Exercise;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Routines ordered by id, starting after an id (keyset pagination, so every page is an index range on _id
+ * however deep it is) and reading only the fields asked. Without a limit the whole collection is read,
+ * which is only meant to be streamed.
+ * The routines of an owner are a range of the (owner, _id) index, already in the order of the pages.
+ * The routines containing an exercise, or an exercise of a sets type, are ranges of the multikey indexes on the
+ * exercises of the routines, and a name prefix is a range of the index on the name.
+ */
+public final class RoutineQuery {
+
+    public static final int NO_LIMIT = 0;
+    public static final int MAX_LIMIT = 500;
+
+    /**
+     * Fields of a routine that can be left out, by their name in the json of the routine and in its document
+     */
+    public enum Field {
+        ROUTINE_NAME("routineName", "name"),
+        OWNER("owner", "owner"),
+        EXERCISE_SETS("exerciseSets", "exerciseSets");
+
+        private final String name;
+        private final String documentField;
+
+        Field(String name, String documentField) {
+            this.name = name;
+            this.documentField = documentField;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDocumentField() {
+            return documentField;
+        }
+
+        public static Optional<Field> fromName(String name) {
+            return Arrays.stream(values()).filter(field -> field.name.equals(name)).findFirst();
+        }
+    }
+
+    private static final String EXERCISE_NAME = "exerciseSets.exerciseName";
+    private static final String SETS_TYPE = "exerciseSets.setsType";
+
+    private final String owner;
+    private final List<List<String>> exercises;
+    private final Exercise.SetsType setsType;
+    private final String namePrefix;
+    private final Integer after;
+    private final int limit;
+    private final Set<Field> fields;
+
+    private RoutineQuery(Builder builder, Set<Field> fields) {
+        this.owner = builder.owner;
+        this.exercises = List.copyOf(builder.exercises);
+        this.setsType = builder.setsType;
+        this.namePrefix = builder.namePrefix;
+        this.after = builder.after;
+        this.limit = builder.limit;
+        this.fields = Collections.unmodifiableSet(fields);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return username whose routines are read, null for the routines of every user
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return names of exercises, the routines contain at least one exercise of each list
+     */
+    public List<List<String>> getExercises() {
+        return exercises;
+    }
+
+    /**
+     * @return sets type of some exercise of the routines, null for any
+     */
+    public Exercise.SetsType getSetsType() {
+        return setsType;
+    }
+
+    /**
+     * @return start of the name of the routines, null for any name
+     */
+    public String getNamePrefix() {
+        return namePrefix;
+    }
+
+    /**
+     * @return id the page starts after, null for the first page
+     */
+    public Integer getAfter() {
+        return after;
+    }
+
+    /**
+     * @return maximum number of routines, {@link #NO_LIMIT} for all of them
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public Set<Field> getFields() {
+        return fields;
+    }
+
+    public boolean includes(Field field) {
+        return fields.contains(field);
+    }
+
+    public Bson filter() {
+        List<Bson> conditions = new ArrayList<>();
+        if (owner != null) {
+            conditions.add(Filters.eq("owner", owner));
+        }
+        for (List<String> names : exercises) {
+            conditions.add(names.size() == 1 ? Filters.eq(EXERCISE_NAME, names.getFirst()) : Filters.in(EXERCISE_NAME, names));
+        }
+        if (setsType != null) {
+            conditions.add(Filters.eq(SETS_TYPE, setsType.name()));
+        }
+        if (namePrefix != null) {
+            // an anchored regex without special characters is a range of the index on the name
+            conditions.add(Filters.regex("name", "^" + escapeRegex(namePrefix)));
+        }
+        if (after != null) {
+            conditions.add(Filters.gt("_id", after));
+        }
+        return switch (conditions.size()) {
+            case 0 -> Filters.empty();
+            case 1 -> conditions.getFirst();
+            default -> Filters.and(conditions);
+        };
+    }
+
+    private static String escapeRegex(String text) {
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (char c : text.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    public Bson projection() {
+        List<String> included = new ArrayList<>();
+        fields.forEach(field -> included.add(field.getDocumentField()));
+        return Projections.include(included); // _id is always included
+    }
+
+    public Bson sort() {
+        return Sorts.ascending("_id");
+    }
+
+    public static class Builder {
+
+        private String owner;
+        private final List<List<String>> exercises = new ArrayList<>();
+        private Exercise.SetsType setsType;
+        private String namePrefix;
+        private Integer after;
+        private int limit = NO_LIMIT;
+        private final EnumSet<Field> fields = EnumSet.noneOf(Field.class);
+
+        public Builder owner(String username) {
+            this.owner = username;
+            return this;
+        }
+
+        /**
+         * Only routines containing any of these exercises, calling it again adds another list they must also contain
+         */
+        public Builder containsExercise(Collection<String> exerciseNames) {
+            if (exerciseNames.isEmpty()) {
+                throw new IllegalArgumentException("No exercises to look for");
+            }
+            exercises.add(List.copyOf(new LinkedHashSet<>(exerciseNames)));
+            return this;
+        }
+
+        public Builder setsType(Exercise.SetsType setsType) {
+            this.setsType = setsType;
+            return this;
+        }
+
+        public Builder namePrefix(String prefix) {
+            this.namePrefix = prefix;
+            return this;
+        }
+
+        public Builder after(Integer id) {
+            this.after = id;
+            return this;
+        }
+
+        public Builder limit(int limit) {
+            if (limit < 1 || limit > MAX_LIMIT) {
+                throw new IllegalArgumentException(String.format("The limit must be between 1 and %d", MAX_LIMIT));
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        /**
+         * Reads only these fields besides the id. Without calling it every field is read.
+         */
+        public Builder fields(Collection<Field> fields) {
+            this.fields.addAll(fields);
+            return this;
+        }
+
+        public RoutineQuery build() {
+            return new RoutineQuery(this, fields.isEmpty() ? EnumSet.allOf(Field.class) : EnumSet.copyOf(fields));
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface RoutineRepository {
     public boolean addRoutine(Routine routine);
@@ -15,7 +16,26 @@ public interface RoutineRepository {
     public boolean updateRoutine(Routine routine);
     public boolean deleteRoutine(Routine routine);
     public List<Routine> findAllRoutines();
+    /**
+     * Reads the routines of the query while the stream is consumed, close it when done
+     */
+    public Stream<Routine> streamRoutines(RoutineQuery query);
     public List<Routine> findRoutinesCreatedByUser(User user);
-    public Optional<Routine> findRoutinesWithFilters(Map<String, String> filter);
+    /**
+     * @param after id the page starts after, null for the first page
+     * @param limit maximum number of routines, 1 to {@link RoutineQuery#MAX_LIMIT}
+     * @return a page of the routines of the user, ordered by id
+     */
+    public List<Routine> findRoutinesCreatedByUser(User user, Integer after, int limit);
+    /**
+     * @param filters filter -> value, the routines match all of them: "exercise_name" (contains the exercise),
+     *                "sets_type" (contains an exercise of that sets type), "muscle_group" (contains an exercise
+     *                of that muscle group) and "name_prefix" (start of the name of the routine)
+     * @param after id the page starts after, null for the first page
+     * @param limit maximum number of routines, 1 to {@link RoutineQuery#MAX_LIMIT}
+     * @return a page of the routines matching the filters, ordered by id
+     * @throws IllegalArgumentException if a filter is not one of those
+     */
+    public List<Routine> findRoutinesWithFilters(Map<String, String> filters, Integer after, int limit);
     void removeAllRoutines();
 }
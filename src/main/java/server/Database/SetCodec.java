@@ -0,0 +1,111 @@
+package server.Database;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import server.Model.Exercise;
+import server.Model.Set;
+
+/**
+ * Writes a set of a routine as {type, reps, weight, distance, duration}. Inside a routine only the fields the
+ * {@link Exercise.SetsType} of its exercise uses are written; read fields that are missing stay 0.
+ */
+public class SetCodec implements Codec<Set> {
+
+    private static final String TYPE = "type";
+    private static final String REPS = "reps";
+    private static final String WEIGHT = "weight";
+    private static final String DISTANCE = "distance";
+    private static final String DURATION = "duration";
+
+    /**
+     * Writes every field, used when the sets type is not known
+     */
+    @Override
+    public void encode(BsonWriter writer, Set set, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writeType(writer, set);
+        writer.writeInt32(REPS, set.getReps());
+        writer.writeDouble(WEIGHT, set.getWeight());
+        writer.writeDouble(DISTANCE, set.getDistance());
+        writer.writeInt32(DURATION, set.getDuration());
+        writer.writeEndDocument();
+    }
+
+    public void encode(BsonWriter writer, Set set, Exercise.SetsType setsType) {
+        writer.writeStartDocument();
+        writeType(writer, set);
+        switch (setsType) {
+            case TIME -> writer.writeInt32(DURATION, set.getDuration());
+            case REPETITIONS -> writer.writeInt32(REPS, set.getReps());
+            case TIME_DISTANCE -> {
+                writer.writeInt32(DURATION, set.getDuration());
+                writer.writeDouble(DISTANCE, set.getDistance());
+            }
+            case WEIGHTED_REPETITIONS -> {
+                writer.writeDouble(WEIGHT, set.getWeight());
+                writer.writeInt32(REPS, set.getReps());
+            }
+        }
+        writer.writeEndDocument();
+    }
+
+    private static void writeType(BsonWriter writer, Set set) {
+        if (set.getSetType() == null) {
+            writer.writeNull(TYPE);
+        } else {
+            writer.writeString(TYPE, set.getSetType().name());
+        }
+    }
+
+    @Override
+    public Set decode(BsonReader reader, DecoderContext decoderContext) {
+        Set.SetBuilder set = Set.builder();
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case TYPE -> {
+                    if (reader.getCurrentBsonType() == BsonType.NULL) {
+                        reader.readNull();
+                    } else {
+                        set.setType(Set.SetType.valueOf(reader.readString()));
+                    }
+                }
+                case REPS -> set.reps(readInt(reader));
+                case WEIGHT -> set.weight(readNumber(reader));
+                case DISTANCE -> set.distance(readNumber(reader));
+                case DURATION -> set.duration(readInt(reader));
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+        return set.build();
+    }
+
+    // numbers written by other clients may have another type, e.g. a weight of 80 stored as an int32
+    static double readNumber(BsonReader reader) {
+        return switch (reader.getCurrentBsonType()) {
+            case INT32 -> reader.readInt32();
+            case INT64 -> reader.readInt64();
+            case DOUBLE -> reader.readDouble();
+            case NULL -> {
+                reader.readNull();
+                yield 0;
+            }
+            default -> throw new IllegalStateException("Expected a number but found " + reader.getCurrentBsonType());
+        };
+    }
+
+    // whole numbers, an int32 is read as it is and other numbers are truncated
+    static int readInt(BsonReader reader) {
+        return reader.getCurrentBsonType() == BsonType.INT32 ? reader.readInt32() : (int) readNumber(reader);
+    }
+
+    @Override
+    public Class<Set> getEncoderClass() {
+        return Set.class;
+    }
+}
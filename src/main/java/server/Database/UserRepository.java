@@ -1,16 +1,24 @@
 package server.Database;
 
 import server.Model.FriendRequest;
+import server.Model.FriendRequestSummary;
 import server.Model.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 public interface UserRepository {
 
     public Optional<User> findByUsername(String username);
     public List<User> findAllUsers();
+    /**
+     * All the users, read as the stream is consumed. It must be closed to release what it holds
+     */
+    public Stream<User> streamAllUsers();
+    public List<User> findUsersByUsernames(Collection<String> usernames);
     public void addUser(User user);
     public void addFriendRequest(FriendRequest friendRequest);
     public void deleteFriendRequest(FriendRequest friendRequest);
@@ -19,5 +27,7 @@ public interface UserRepository {
     public Set<FriendRequest> findFriendRequestsByRequester(User requester);
     public Set<FriendRequest> findFriendRequestsByRequested(User requested);
     public Optional<FriendRequest> findFriendRequestsByBothUsers(User requester, User requested);
+    public List<FriendRequestSummary> findOutgoingRequestSummaries(String requester);
+    public List<FriendRequestSummary> findIncomingRequestSummaries(String requested);
     public Set<String> findFriendsFromUser(User friend);
 }
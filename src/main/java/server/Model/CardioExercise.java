@@ -1,9 +1,15 @@
 package server.Model;
 
 import lombok.AllArgsConstructor;
-import lombok.NoArgsConstructor;
 
 @AllArgsConstructor
 public class CardioExercise extends Exercise {
 
-}
\ No newline at end of file
+    public void setExerciseName(String exerciseName) {
+        this.exerciseName = exerciseName;
+    }
+
+    public void setSetsType(SetsType setsType) {
+        this.setsType = setsType;
+    }
+}
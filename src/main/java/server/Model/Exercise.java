@@ -3,10 +3,11 @@ package server.Model;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
-import lombok.Setter;
 
+/**
+ * Subclasses decide if the exercise can change: gym exercises are immutable, cardio ones have setters.
+ */
 @Getter
-@Setter
 @AllArgsConstructor
 @NoArgsConstructor
 public abstract class Exercise {
@@ -0,0 +1,10 @@
+package server.Model;
+
+import java.util.List;
+
+/**
+ * A page of exercises ordered by name
+ * @param next name to continue after for the next page, null if this is the last one
+ */
+public record ExercisePage(List<Exercise> exercises, String next) {
+}
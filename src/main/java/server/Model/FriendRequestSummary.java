@@ -0,0 +1,10 @@
+package server.Model;
+
+import java.util.Calendar;
+
+/**
+ * Projection of a friend request seen by one of its users: the other user and the date.
+ * Listing requests with it doesn't need to load any user.
+ */
+public record FriendRequestSummary(String username, Calendar date) {
+}
@@ -3,6 +3,9 @@ package server.Model;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+/**
+ * Exercise of the catalog. Instances are immutable, so the same one can be shared by every routine that uses it.
+ */
 @Getter
 public class GymExercise extends Exercise {
 
@@ -121,10 +124,10 @@ public class GymExercise extends Exercise {
         this.bodyRegion = bodyRegion;
     }
 
-    private DifficultyLevel difficultyLevel;
-    private MuscleGroup muscleGroup;
-    private Equipment equipment;
-    private SingleArm arm;
-    private Grip grip;
-    private BodyRegion bodyRegion;
-}
\ No newline at end of file
+    private final DifficultyLevel difficultyLevel;
+    private final MuscleGroup muscleGroup;
+    private final Equipment equipment;
+    private final SingleArm arm;
+    private final Grip grip;
+    private final BodyRegion bodyRegion;
+}
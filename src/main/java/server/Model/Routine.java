@@ -20,10 +20,15 @@ public class Routine {
     private int id;
     private String routineName;
     private List<ExerciseSet> exerciseSets;
+    private String owner; // username of the user who created it
 
     public Routine(int id, String routineName) {
         this.id = id;
         this.routineName = routineName;
         exerciseSets = new ArrayList<>();
     }
+
+    public Routine(int id, String routineName, List<ExerciseSet> exerciseSets) {
+        this(id, routineName, exerciseSets, null);
+    }
 }
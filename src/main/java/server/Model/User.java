@@ -1,5 +1,8 @@
 package server.Model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -15,6 +18,8 @@ import java.util.stream.Collectors;
 
 @Setter
 @NoArgsConstructor
+// friends are written as their usernames, so users that are friends of each other don't serialize each other forever
+@JsonIgnoreProperties(value = "friends", allowGetters = true)
 public class User {
 
     @Getter
@@ -54,9 +59,19 @@ public class User {
         return false;
     }
 
+    @JsonIgnore
     public Set<User> getFriends() {
         return friends.stream().map(userLazyReference -> {
             return userLazyReference.get();
         }).collect(Collectors.toSet());
     }
+
+    /**
+     * Usernames of the friends, without loading the ones that aren't loaded yet
+     */
+    @JsonProperty("friends")
+    public Set<String> getFriendUsernames() {
+        return friends.stream().map(reference -> reference instanceof UserReference userReference
+                ? userReference.getUsername() : reference.get().getUsername()).collect(Collectors.toSet());
+    }
 }
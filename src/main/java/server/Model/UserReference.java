@@ -0,0 +1,26 @@
+package server.Model;
+
+import java.util.function.Supplier;
+
+/**
+ * Reference to a friend of a user. The username is known without loading the user, so the friends of a user
+ * can be listed or compared by username without any query.
+ */
+public class UserReference extends LazyReference<User> {
+
+    private final String username;
+
+    public UserReference(String username, Supplier<User> loader) {
+        super(loader);
+        this.username = username;
+    }
+
+    public UserReference(User user) {
+        super(user);
+        this.username = user.getUsername();
+    }
+
+    public String getUsername() {
+        return username;
+    }
+}
@@ -0,0 +1,134 @@
+package server.Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit of one route, adapted to the latency of its requests (gradient limit).
+ * A short and a long moving average of the request latency are kept: while they are close the limit grows
+ * by about sqrt(limit), when the short one rises (the database or the server is queueing) the limit shrinks
+ * by the ratio between them. Failed requests shrink it by a fixed factor.
+ * Requests over the limit are rejected at once instead of waiting for a slot.
+ */
+public class AdaptiveLimiter {
+
+    private static final Map<String, AdaptiveLimiter> limiters = new ConcurrentSkipListMap<>();
+
+    private static final int INITIAL_LIMIT = PropertiesLoader.getIntProperty("server.limit.initial", 32);
+    private static final int MIN_LIMIT = PropertiesLoader.getIntProperty("server.limit.min", 4);
+    private static final int MAX_LIMIT = PropertiesLoader.getIntProperty("server.limit.max", 256);
+
+    private static final double TOLERANCE = 1.5; // latency increase accepted before shrinking the limit
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.limit = (int) estimatedLimit;
+    }
+
+    /**
+     * Creates the limiter of a route with the server.limit.* properties and registers it for the metrics,
+     * replacing any previous limiter with the same name
+     */
+    public static AdaptiveLimiter forRoute(String name) {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(name, INITIAL_LIMIT, MIN_LIMIT, MAX_LIMIT);
+        limiters.put(name, limiter);
+        return limiter;
+    }
+
+    /**
+     * @return true if the request can run, in that case {@link #release} must be called when it ends
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @param rttNanos time the request took
+     * @param success false if the request failed, which is taken as a sign of overload
+     */
+    public void release(long rttNanos, boolean success) {
+        int running = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (!success) {
+                estimatedLimit = Math.max(minLimit, estimatedLimit * BACKOFF);
+            } else {
+                sample(rttNanos, running);
+            }
+            limit = (int) estimatedLimit;
+        }
+    }
+
+    private void sample(long rttNanos, int running) {
+        double rtt = Math.max(1, rttNanos);
+        shortRtt = shortRtt == 0 ? rtt : shortRtt * 0.9 + rtt * 0.1;
+        longRtt = longRtt == 0 ? rtt : longRtt * 0.99 + rtt * 0.01;
+
+        // after a long overload the long average drifts up, pull it down so the limit can recover
+        if (longRtt > shortRtt * 2) {
+            longRtt *= 0.95;
+        }
+        // with few requests running the latency says nothing about the limit
+        if (running < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        limiters.forEach((name, limiter) -> stats.put(name, Map.of(
+                "limit", limiter.getLimit(),
+                "inFlight", limiter.getInFlight(),
+                "rejected", limiter.getRejected())));
+        return stats;
+    }
+}
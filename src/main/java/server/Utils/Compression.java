@@ -0,0 +1,313 @@
+package server.Utils;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response compression negotiated with the Accept-Encoding header of the request.
+ * Bodies smaller than server.compression.minbytes are sent as they are, since compressing them costs more than
+ * what it saves. Deflaters keep native zlib memory, so they are pooled and reset instead of created per response.
+ */
+public class Compression {
+
+    public enum Encoding {
+        GZIP("gzip"),
+        DEFLATE("deflate"),
+        IDENTITY("identity");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        public String getToken() {
+            return token;
+        }
+    }
+
+    private static final int MIN_BYTES = PropertiesLoader.getIntProperty("server.compression.minbytes", 1024);
+    private static final int POOL_SIZE = 64;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    // gzip writes its own header and trailer around raw deflate data (nowrap), deflate uses the zlib wrapper
+    private static final BlockingQueue<Deflater> rawDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final BlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private static final AtomicLong compressedResponses = new AtomicLong();
+    private static final AtomicLong uncompressedResponses = new AtomicLong();
+    private static final AtomicLong bytesIn = new AtomicLong();
+    private static final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * Chooses the encoding of a response from the Accept-Encoding header, gzip is preferred over deflate
+     * @param acceptEncoding value of the header, may be null
+     * @return encoding to use, IDENTITY if the client doesn't accept a supported one
+     */
+    public static Encoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return Encoding.IDENTITY;
+        }
+        Set<String> accepted = new HashSet<>();
+        Set<String> refused = new HashSet<>();
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            boolean isRefused = tokens.length > 1 && tokens[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            (isRefused ? refused : accepted).add(coding);
+        }
+        // * accepts the codings not listed, so it never brings back one refused with q=0
+        boolean any = accepted.contains("*");
+        boolean gzip = !refused.contains("gzip") && (any || accepted.contains("gzip"));
+        boolean deflate = !refused.contains("deflate") && (any || accepted.contains("deflate"));
+        return gzip ? Encoding.GZIP : deflate ? Encoding.DEFLATE : Encoding.IDENTITY;
+    }
+
+    public static Encoding negotiate(HttpExchange exchange) {
+        return negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+    }
+
+    /**
+     * Compresses a whole body if it is worth it, setting the response headers.
+     * @return the bytes to send
+     */
+    public static byte[] compressBody(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        Encoding encoding = body.length < MIN_BYTES ? Encoding.IDENTITY : negotiate(exchange);
+        if (encoding == Encoding.IDENTITY) {
+            uncompressedResponses.incrementAndGet();
+            return body;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (OutputStream os = compressingStream(compressed, encoding)) {
+            os.write(body);
+        }
+        exchange.getResponseHeaders().set("Content-Encoding", encoding.getToken());
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Opens the body of a response whose length is unknown. The first server.compression.minbytes bytes are buffered:
+     * if the body ends before that, it is sent uncompressed with its Content-Length, otherwise it is sent chunked and
+     * compressed with the negotiated encoding. Headers are sent when the stream decides, so set them before writing.
+     */
+    public static ResponseBody openResponseBody(HttpExchange exchange, int httpStatus) {
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        return new ResponseBody(exchange, httpStatus, negotiate(exchange));
+    }
+
+    public static OutputStream compressingStream(OutputStream out, Encoding encoding) throws IOException {
+        return new DeflaterStream(out, encoding);
+    }
+
+    public static Map<String, Object> stats() {
+        long in = bytesIn.get();
+        long out = bytesOut.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("compressedResponses", compressedResponses.get());
+        stats.put("uncompressedResponses", uncompressedResponses.get());
+        stats.put("bytesIn", in);
+        stats.put("bytesOut", out);
+        stats.put("ratio", in == 0 ? 1.0 : (double) out / in);
+        stats.put("pooledDeflaters", rawDeflaters.size() + zlibDeflaters.size());
+        return stats;
+    }
+
+    private static Deflater borrowDeflater(Encoding encoding) {
+        BlockingQueue<Deflater> pool = encoding == Encoding.GZIP ? rawDeflaters : zlibDeflaters;
+        Deflater deflater = pool.poll();
+        return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, encoding == Encoding.GZIP);
+    }
+
+    private static void releaseDeflater(Encoding encoding, Deflater deflater) {
+        deflater.reset();
+        BlockingQueue<Deflater> pool = encoding == Encoding.GZIP ? rawDeflaters : zlibDeflaters;
+        if (!pool.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static class DeflaterStream extends OutputStream {
+        private final OutputStream out;
+        private final Encoding encoding;
+        private final Deflater deflater;
+        private final CRC32 crc = new CRC32();
+        private final byte[] buffer = new byte[8192];
+        private long written;
+        private long compressed;
+        private boolean closed;
+
+        private DeflaterStream(OutputStream out, Encoding encoding) throws IOException {
+            this.out = out;
+            this.encoding = encoding;
+            this.deflater = borrowDeflater(encoding);
+            if (encoding == Encoding.GZIP) {
+                out.write(GZIP_HEADER);
+                compressed += GZIP_HEADER.length;
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return;
+            if (encoding == Encoding.GZIP) crc.update(b, off, len);
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                deflate();
+            }
+            written += len;
+        }
+
+        private void deflate() throws IOException {
+            int length = deflater.deflate(buffer, 0, buffer.length, Deflater.NO_FLUSH);
+            if (length > 0) {
+                out.write(buffer, 0, length);
+                compressed += length;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        // gives the deflater back without finishing the compressed data
+        private void abort() {
+            if (closed) return;
+            closed = true;
+            releaseDeflater(encoding, deflater);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    deflate();
+                }
+                if (encoding == Encoding.GZIP) {
+                    writeIntLE(crc.getValue());
+                    writeIntLE(written);
+                    compressed += 8;
+                }
+                out.close();
+            } finally {
+                releaseDeflater(encoding, deflater);
+                compressedResponses.incrementAndGet();
+                bytesIn.addAndGet(written);
+                bytesOut.addAndGet(compressed);
+            }
+        }
+
+        private void writeIntLE(long value) throws IOException {
+            out.write((int) (value & 0xff));
+            out.write((int) ((value >> 8) & 0xff));
+            out.write((int) ((value >> 16) & 0xff));
+            out.write((int) ((value >> 24) & 0xff));
+        }
+    }
+
+    /**
+     * Body opened with {@link #openResponseBody}
+     */
+    public static final class ResponseBody extends OutputStream {
+        private final HttpExchange exchange;
+        private final int httpStatus;
+        private final Encoding encoding;
+        private ByteArrayOutputStream pending = new ByteArrayOutputStream(MIN_BYTES);
+        private OutputStream target;
+        private boolean aborted;
+
+        private ResponseBody(HttpExchange exchange, int httpStatus, Encoding encoding) {
+            this.exchange = exchange;
+            this.httpStatus = httpStatus;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target != null) {
+                target.write(b, off, len);
+                return;
+            }
+            pending.write(b, off, len);
+            if (pending.size() >= MIN_BYTES) {
+                if (encoding == Encoding.IDENTITY) {
+                    exchange.sendResponseHeaders(httpStatus, 0);
+                    target = exchange.getResponseBody();
+                    uncompressedResponses.incrementAndGet();
+                } else {
+                    exchange.getResponseHeaders().set("Content-Encoding", encoding.getToken());
+                    exchange.sendResponseHeaders(httpStatus, 0);
+                    target = compressingStream(exchange.getResponseBody(), encoding);
+                }
+                pending.writeTo(target);
+                pending = null;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) target.flush();
+        }
+
+        /**
+         * Gives up the body after an error while writing it, the stream can't be used anymore.
+         * @return true if nothing was sent yet, so another response can be sent instead. False if the headers
+         * and part of the body are already sent: the exchange must be dropped without ending the body,
+         * so the client sees it cut instead of a complete but partial response.
+         */
+        public boolean abort() {
+            if (aborted) {
+                return target == null;
+            }
+            aborted = true;
+            pending = null;
+            if (target instanceof DeflaterStream deflaterStream) {
+                deflaterStream.abort();
+            }
+            return target == null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (aborted) {
+                return;
+            }
+            if (target == null) {
+                // small body: send it as it is with its length
+                byte[] body = pending.toByteArray();
+                pending = null;
+                exchange.sendResponseHeaders(httpStatus, body.length == 0 ? -1 : body.length);
+                target = exchange.getResponseBody();
+                target.write(body);
+                uncompressedResponses.incrementAndGet();
+            }
+            target.close();
+        }
+    }
+}
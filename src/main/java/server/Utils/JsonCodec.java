@@ -0,0 +1,73 @@
+package server.Utils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single place where json is read and written. The ObjectMapper and the readers/writers built from it are
+ * thread-safe, so they are shared by every request instead of creating a new ObjectMapper each time
+ * (which threw away Jackson's serializer and deserializer caches). Readers and writers are cached per type and
+ * resolve their (de)serializer when they are created, so call {@link #prewarm} at startup with the request
+ * and response types to pay that cost before the first request.
+ */
+public class JsonCodec {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final Map<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+    private static final Map<JavaType, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public static ObjectReader readerFor(Class<?> type) {
+        return readerFor(objectMapper.constructType(type));
+    }
+
+    public static ObjectReader readerFor(TypeReference<?> type) {
+        return readerFor(objectMapper.constructType(type));
+    }
+
+    private static ObjectReader readerFor(JavaType type) {
+        // a body with something after its json value is rejected instead of ignoring the rest
+        return readers.computeIfAbsent(type, key -> objectMapper.readerFor(key).with(DeserializationFeature.FAIL_ON_TRAILING_TOKENS));
+    }
+
+    public static ObjectWriter writerFor(Class<?> type) {
+        return writerFor(objectMapper.constructType(type));
+    }
+
+    public static ObjectWriter writerFor(TypeReference<?> type) {
+        return writerFor(objectMapper.constructType(type));
+    }
+
+    private static ObjectWriter writerFor(JavaType type) {
+        return writers.computeIfAbsent(type, objectMapper::writerFor);
+    }
+
+    /**
+     * Creates a generator writing UTF-8 json into the given stream, able to write any object with writeObject.
+     * Closing it doesn't complete the arrays and objects left open, so a body cut by an error never looks whole.
+     */
+    public static JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        return objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    }
+
+    /**
+     * Builds the reader and writer of each type so their (de)serializers are ready before the first request.
+     */
+    public static void prewarm(Class<?>... types) {
+        for (Class<?> type : types) {
+            readerFor(type);
+            writerFor(type);
+        }
+    }
+}
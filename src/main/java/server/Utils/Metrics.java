@@ -0,0 +1,25 @@
+package server.Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the runtime counters of the server, served as json by GET /metrics.
+ * Each source is read when the metrics are requested, so registering one has no cost on the request path.
+ */
+public class Metrics {
+
+    private static final Map<String, Supplier<?>> sources = new ConcurrentSkipListMap<>();
+
+    public static void register(String name, Supplier<?> source) {
+        sources.put(name, source);
+    }
+
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        sources.forEach((name, source) -> snapshot.put(name, source.get()));
+        return snapshot;
+    }
+}
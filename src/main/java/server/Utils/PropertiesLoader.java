@@ -17,4 +17,21 @@ public class PropertiesLoader {
     public static String getProperty(String key) {
         return properties.getProperty(key);
     }
+
+    public static String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LoggerService.logerror(String.format("Invalid value for property %s, using %d", key, defaultValue));
+            return defaultValue;
+        }
+    }
 }
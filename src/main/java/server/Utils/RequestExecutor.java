@@ -0,0 +1,140 @@
+package server.Utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor used by the HttpServer to run every exchange outside the dispatcher thread.
+ * In VIRTUAL mode each request gets its own virtual thread, in PLATFORM mode a fixed pool is used.
+ * Both modes cap the requests running at the same time and the requests waiting for a slot,
+ * anything beyond that is rejected (the server closes the connection).
+ */
+public class RequestExecutor implements Executor {
+
+    public enum Mode {
+        VIRTUAL,
+        PLATFORM
+    }
+
+    private final Mode mode;
+    private final int maxConcurrency;
+    private final int queueSize;
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RequestExecutor(Mode mode, int maxConcurrency, int queueSize, int platformThreads) {
+        this.mode = mode;
+        this.maxConcurrency = maxConcurrency;
+        this.queueSize = queueSize;
+        if (mode == Mode.VIRTUAL) {
+            this.delegate = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).factory());
+            this.permits = new Semaphore(maxConcurrency);
+        } else {
+            int threads = Math.min(platformThreads, maxConcurrency);
+            this.delegate = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), daemonThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+            this.permits = null;
+        }
+    }
+
+    /**
+     * Builds the executor from the server.executor.* properties of application.properties
+     */
+    public static RequestExecutor fromProperties() {
+        Mode mode;
+        try {
+            mode = Mode.valueOf(PropertiesLoader.getProperty("server.executor.mode", "virtual").trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LoggerService.logerror("Unknown server.executor.mode, using virtual threads");
+            mode = Mode.VIRTUAL;
+        }
+        return new RequestExecutor(mode,
+                PropertiesLoader.getIntProperty("server.executor.maxconcurrency", 256),
+                PropertiesLoader.getIntProperty("server.executor.queuesize", 1024),
+                PropertiesLoader.getIntProperty("server.executor.platformthreads", 32));
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (mode == Mode.PLATFORM) {
+            try {
+                delegate.execute(countingPending(task));
+            } catch (RejectedExecutionException e) {
+                pending.decrementAndGet();
+                rejected.incrementAndGet();
+                throw e;
+            }
+            return;
+        }
+
+        // Virtual threads are cheap, but the work they do (JDBC, BCrypt) is not: only maxConcurrency of them
+        // run at once and at most queueSize more are allowed to wait for a permit.
+        if (pending.incrementAndGet() > maxConcurrency + queueSize) {
+            pending.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("Too many requests in flight");
+        }
+        delegate.execute(() -> {
+            try {
+                permits.acquire();
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pending.decrementAndGet();
+            }
+        });
+    }
+
+    private Runnable countingPending(Runnable task) {
+        pending.incrementAndGet();
+        return () -> {
+            try {
+                task.run();
+            } finally {
+                pending.decrementAndGet();
+            }
+        };
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // requests running or waiting to run
+    public int getPending() {
+        return pending.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private static ThreadFactory daemonThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "request-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
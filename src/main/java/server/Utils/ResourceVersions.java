@@ -0,0 +1,74 @@
+package server.Utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters of the resources served to clients (a user, its friends, its friend requests...).
+ * Every write that changes a resource bumps its version, so an ETag can be built from the version alone and
+ * a conditional GET can be answered without querying the database. The ETag is weak: the same version may be
+ * sent gzipped or not, so it identifies the content and not the exact bytes of the response.
+ * The epoch changes on every start, as versions only live in memory.
+ */
+public class ResourceVersions {
+
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36)
+            + Integer.toString(ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE), 36);
+    private static final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    public static String user(String username) {
+        return "user:" + username;
+    }
+
+    public static String friends(String username) {
+        return "friends:" + username;
+    }
+
+    public static String incomingRequests(String username) {
+        return "incoming:" + username;
+    }
+
+    public static String outgoingRequests(String username) {
+        return "outgoing:" + username;
+    }
+
+    public static long version(String resource) {
+        AtomicLong version = versions.get(resource);
+        return version == null ? 0 : version.get();
+    }
+
+    public static void bump(String... resources) {
+        for (String resource : resources) {
+            versions.computeIfAbsent(resource, key -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public static String etag(String resource) {
+        return String.format("W/\"%s-%d\"", EPOCH, version(resource));
+    }
+
+    /**
+     * @param ifNoneMatch value of the If-None-Match header, may be null
+     * @param etag current ETag of the resource
+     * @return true if the client already has the current version, comparing the tags as weak ones
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String current = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = opaqueTag(candidate.trim());
+            if (tag.equals("*") || tag.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
@@ -0,0 +1,120 @@
+package server.Utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket rate limiter with one bucket per key (a client address, a username...).
+ * Each bucket is a single long derived from the time at which it will be full again (GCRA), updated with a CAS,
+ * so checking a key never takes a lock. A full bucket is the same as a missing one, so when there are more than
+ * maxKeys buckets the full ones are evicted, and if that is not enough the map is trimmed to keep memory bounded.
+ */
+public class TokenBucketLimiter {
+
+    private static final Map<String, TokenBucketLimiter> limiters = new ConcurrentSkipListMap<>();
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final LongSupplier clock;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * @param burst tokens of a full bucket
+     * @param tokensPerSecond refill rate
+     * @param maxKeys buckets kept before evicting
+     * @param clock source of nanoseconds, System::nanoTime outside tests
+     */
+    public TokenBucketLimiter(int burst, double tokensPerSecond, int maxKeys, LongSupplier clock) {
+        this.nanosPerToken = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.burstNanos = nanosPerToken * burst;
+        this.maxKeys = maxKeys;
+        this.clock = clock;
+    }
+
+    /**
+     * Builds the limiter from the server.ratelimit.[name].* properties and registers it for the metrics
+     */
+    public static TokenBucketLimiter fromProperties(String name, int burst, int tokensPerSecond) {
+        String prefix = "server.ratelimit." + name;
+        TokenBucketLimiter limiter = new TokenBucketLimiter(
+                PropertiesLoader.getIntProperty(prefix + ".burst", burst),
+                PropertiesLoader.getIntProperty(prefix + ".persecond", tokensPerSecond),
+                PropertiesLoader.getIntProperty("server.ratelimit.maxkeys", 100_000),
+                System::nanoTime);
+        limiters.put(name, limiter);
+        return limiter;
+    }
+
+    /**
+     * Takes a token from the bucket of the key
+     * @return 0 if the token was taken, otherwise the nanoseconds until one is available
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxKeys) {
+                evict();
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(Long.MIN_VALUE));
+        }
+        while (true) {
+            long now = clock.getAsLong();
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now - burstNanos) + nanosPerToken;
+            if (next > now) { // the bucket would go below zero tokens
+                rejected.incrementAndGet();
+                return next - now;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return; // another thread is already evicting
+        }
+        try {
+            long now = clock.getAsLong();
+            buckets.values().removeIf(bucket -> bucket.get() <= now - burstNanos);
+            // every bucket is in use: forget some of them rather than growing without bound
+            Iterator<AtomicLong> it = buckets.values().iterator();
+            while (buckets.size() >= maxKeys && it.hasNext()) {
+                it.next();
+                it.remove();
+                evicted.incrementAndGet();
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    public int getKeys() {
+        return buckets.size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public static Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        limiters.forEach((name, limiter) -> stats.put(name, Map.of(
+                "keys", limiter.getKeys(),
+                "rejected", limiter.getRejected(),
+                "forcedEvictions", limiter.evicted.get())));
+        return stats;
+    }
+}
@@ -1,35 +1,90 @@
 package server.Utils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.sun.net.httpserver.HttpExchange;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
 
 public class Utils {
 
+    /**
+     * Writes the body of a streamed json response
+     */
+    @FunctionalInterface
+    public interface JsonBodyWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
     public static void httpResponse(HttpExchange httpExchange, int httpStatus, boolean isJson, String response) {
         try {
             if (isJson)
                 httpExchange.getResponseHeaders().set("Content-Type", "application/json");
             else
                 httpExchange.getResponseHeaders().set("Content-Type", "text/plain");
-            httpExchange.sendResponseHeaders(httpStatus, response.getBytes().length);
+            byte[] body = Compression.compressBody(httpExchange, response.getBytes(StandardCharsets.UTF_8));
+            httpExchange.sendResponseHeaders(httpStatus, body.length);
             OutputStream os = httpExchange.getResponseBody();
-            os.write(response.getBytes());
+            os.write(body);
             os.close();
         } catch (IOException ex) {
             try {
                 httpExchange.getResponseHeaders().set("Content-Type", "text/plain");
                 String errorResponse = "Internal error retrieving infomation";
                 LoggerService.logerror("Error while retrieving httpResponse... " + ex.getMessage());
-                httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, errorResponse.getBytes().length);
+                byte[] errorBody = errorResponse.getBytes(StandardCharsets.UTF_8);
+                httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_INTERNAL_ERROR, errorBody.length);
                 OutputStream os = httpExchange.getResponseBody();
-                os.write(errorResponse.getBytes());
+                os.write(errorBody);
                 os.close();
             } catch (IOException ex2) {
                 LoggerService.logerror("Fatal error retrieving error message after error retrieving httpResponse");
             }
         }
     }
+
+    /**
+     * Answers 304 Not Modified to a conditional request, without body
+     */
+    public static void httpNotModified(HttpExchange httpExchange, String etag) {
+        try {
+            httpExchange.getResponseHeaders().set("ETag", etag);
+            httpExchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+            httpExchange.close();
+        } catch (IOException ex) {
+            LoggerService.logerror("Error while retrieving not modified httpResponse... " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Sends a json response written directly into the response body with chunked transfer encoding
+     * (compressed if the client accepts it), so the payload is never held in memory as a whole.
+     * If writing the body fails before anything is sent, the response is a 500 instead. After the status
+     * is sent it can't change, so the connection is dropped before the end of the body and the client
+     * sees the response cut, never a partial body that looks complete.
+     *
+     * @param httpExchange representing the http request
+     * @param httpStatus status of the response
+     * @param body writes the json through the given generator
+     * @throws UncheckedIOException if the response was cut, so the server closes the connection
+     */
+    public static void httpJsonStreamResponse(HttpExchange httpExchange, int httpStatus, JsonBodyWriter body) {
+        httpExchange.getResponseHeaders().set("Content-Type", "application/json");
+        Compression.ResponseBody os = Compression.openResponseBody(httpExchange, httpStatus);
+        try {
+            JsonGenerator generator = JsonCodec.createGenerator(os);
+            body.write(generator);
+            generator.close(); // also closes the body
+        } catch (IOException | RuntimeException ex) {
+            LoggerService.logerror("Error while streaming httpResponse... " + ex.getMessage());
+            if (os.abort()) {
+                httpResponse(httpExchange, HttpURLConnection.HTTP_INTERNAL_ERROR, false, "Internal error");
+            } else {
+                throw new UncheckedIOException("Streamed response cut", ex instanceof IOException io ? io : new IOException(ex));
+            }
+        }
+    }
 }
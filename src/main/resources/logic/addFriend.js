@@ -1,6 +1,6 @@
 function searchUser() {
     const user = document.querySelector("#username-input").value;
-    httpRequest('http://localhost:8080/user?username='+user, 'GET')
+    httpRequest('/user?username='+user, 'GET')
         .then(response => {
             const status = response.status;
             const body = response.body;
@@ -17,7 +17,7 @@ function addUser() {
     const requested = document.querySelector("#username").innerText;
     const session_token = localStorage.getItem('session_token');
     const jsonData = JSON.stringify({ session_token, requested });
-    httpRequest('http://localhost:8080/user/friend', 'POST', jsonData)
+    httpRequest('/user/friend', 'POST', jsonData)
         .then(response => {
             const status = response.status;
             const body = response.body;
@@ -14,7 +14,7 @@ function initForm() {
 
         const jsonData = JSON.stringify({ username, password });
 
-        httpRequest('http://localhost:8080/user/login', 'POST', jsonData)
+        httpRequest('/user/login', 'POST', jsonData)
             .then(response => {
                 console.log("Respuesta del servidor:", response);
 
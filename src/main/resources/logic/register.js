@@ -14,7 +14,7 @@ function initForm() {
         }
 
         const jsonData = JSON.stringify({ username, password, dateOfBirth });
-        httpRequest('http://localhost:8080/user', 'POST', jsonData)
+        httpRequest('/user', 'POST', jsonData)
             .then(response => {
                 const status = response.status;
                 const body = response.body;
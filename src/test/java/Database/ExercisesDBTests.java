@@ -4,16 +4,24 @@ import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import server.Database.ExerciseCatalog;
+import server.Database.ExerciseColumn;
+import server.Database.ExerciseQuery;
 import server.Database.MySqlConnector;
 import server.Model.Exercise;
+import server.Model.ExercisePage;
 import server.Model.GymExercise;
 
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class ExercisesDBTests {
@@ -57,6 +65,17 @@ public class ExercisesDBTests {
         assertTrue(exercise.isEmpty());
     }
 
+    @Test
+    public void retrieveSeveralExercisesByName() {
+        Map<String, Exercise> exercises = connector.findExercisesByNames(List.of("Barbell Bench Press", "barbell bench press", "Alternating Double Dumbbell Push Press", "Not found"));
+        assertEquals(Set.of("Barbell Bench Press", "barbell bench press", "Alternating Double Dumbbell Push Press"), exercises.keySet());
+        assertEquals("Barbell Bench Press", exercises.get("barbell bench press").getExerciseName());
+
+        ExerciseCatalog catalog = new ExerciseCatalog(connector);
+        Map<String, Exercise> fromCatalog = catalog.findExercisesByNames(List.of("Barbell Bench Press", "barbell bench press", "Alternating Double Dumbbell Push Press", "Not found"));
+        assertEquals(exercises.keySet(), fromCatalog.keySet());
+    }
+
     @Test
     public void retrieveExerciseWithFilter() {
         Map<String, String> filters = Map.of("grip", "Pronated", "body_region", "Upper Body", "single_double_arm", "Double Arm");
@@ -73,4 +92,40 @@ public class ExercisesDBTests {
         Set<Exercise> set = connector.findExerciseWithFilters(filters);
         assertTrue(set.isEmpty());
     }
+
+    @Test
+    public void browseCatalogInPages() {
+        Set<String> names = new HashSet<>();
+        String next = null;
+        do {
+            ExercisePage page = connector.findExercises(ExerciseQuery.builder().after(next).limit(ExerciseQuery.MAX_LIMIT).build());
+            page.exercises().forEach(exercise -> names.add(exercise.getExerciseName()));
+            next = page.next();
+        } while (next != null);
+        assertEquals(2988, names.size());
+    }
+
+    @Test
+    public void pagesMatchAnyValueOfEachColumn() {
+        ExercisePage page = connector.findExercises(ExerciseQuery.builder()
+                .where(ExerciseColumn.GRIP, "Pronated")
+                .where(ExerciseColumn.BODY_REGION, "Upper Body")
+                .where(ExerciseColumn.SINGLE_DOUBLE_ARM, "Double Arm")
+                .where(ExerciseColumn.DIFFICULTY, "Master", "Grand Master")
+                .limit(ExerciseQuery.MAX_LIMIT)
+                .build());
+        assertTrue(page.exercises().size() >= 8);
+        assertNull(page.next());
+
+        // the catalog in memory finds the same exercises
+        ExerciseCatalog catalog = new ExerciseCatalog(connector);
+        ExerciseQuery query = ExerciseQuery.builder().where(ExerciseColumn.MUSCLE_GROUP, "Chest", "Back").limit(ExerciseQuery.MAX_LIMIT).build();
+        assertEquals(connector.findExercises(query).exercises().stream().map(Exercise::getExerciseName).collect(Collectors.toSet()),
+                catalog.findExercises(query).exercises().stream().map(Exercise::getExerciseName).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void unknownFilterColumnsAreRejected() {
+        assertTrue(connector.findExerciseWithFilters(Map.of("1=1 OR exercise_name", "x")).isEmpty());
+    }
 }
@@ -0,0 +1,124 @@
+package Database;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import server.Database.MySqlConnector;
+import server.Model.FriendRequest;
+import server.Model.User;
+import server.Utils.PropertiesLoader;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Calendar;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FriendsIndexDBTest {
+
+    private static final int USERS = 50_000;
+    private static final int FRIENDS_PER_USER = 8; // 400.000 friendships
+
+    private static MySqlConnector connector;
+    private static Connection connection;
+
+    @BeforeAll
+    public static void setup() throws SQLException {
+        connector = new MySqlConnector();
+        connector.connectDatabase();
+        connector.truncateTables();
+        connection = DriverManager.getConnection(PropertiesLoader.getProperty("database.sql.url"),
+                PropertiesLoader.getProperty("database.sql.username"), PropertiesLoader.getProperty("database.sql.password"));
+        seed();
+    }
+
+    @AfterAll
+    public static void cleanup() throws SQLException {
+        connector.truncateTables();
+        connector.closeDatabse();
+        connection.close();
+    }
+
+    // user i is friend of the next FRIENDS_PER_USER users, already in canonical order
+    private static void seed() throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO friends (username1, username2) VALUES(?,?)")) {
+            for (int i = 0; i < USERS; i++) {
+                for (int j = 1; j <= FRIENDS_PER_USER && i + j < USERS; j++) {
+                    String a = String.format("u%06d", i);
+                    String b = String.format("u%06d", i + j);
+                    statement.setString(1, a);
+                    statement.setString(2, b);
+                    statement.addBatch();
+                }
+                if (i % 1000 == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE friends");
+        }
+    }
+
+    @Test
+    public void friendLookupsUseTheIndexes() throws SQLException {
+        // the same statements MySqlConnector runs
+        assertIndexed("SELECT username2 AS friend FROM friends WHERE username1=? UNION ALL SELECT username1 FROM friends WHERE username2=?",
+                "u025000", "u025000");
+        assertIndexed("SELECT 1 FROM friends WHERE username1=? AND username2=?", "u025000", "u025001");
+        assertIndexed("DELETE FROM friends WHERE username1=? AND username2=?", "u025000", "u025001");
+    }
+
+    @Test
+    public void friendshipsAreFoundInEitherOrder() {
+        User zoe = new User("zoe", "password", Calendar.getInstance());
+        User adam = new User("adam", "password", Calendar.getInstance());
+        connector.addFriend(new FriendRequest(zoe, adam, Calendar.getInstance()));
+        connector.addFriend(new FriendRequest(adam, zoe, Calendar.getInstance())); // ignored, they are friends
+
+        assertTrue(connector.friendshipExists(new FriendRequest(adam, zoe, Calendar.getInstance())));
+        assertTrue(connector.friendshipExists(new FriendRequest(zoe, adam, Calendar.getInstance())));
+        assertEquals(Set.of("adam"), connector.findFriendsFromUser(zoe));
+        assertEquals(Set.of("zoe"), connector.findFriendsFromUser(adam));
+
+        connector.deleteFriend(new FriendRequest(adam, zoe, Calendar.getInstance()));
+        assertFalse(connector.friendshipExists(new FriendRequest(zoe, adam, Calendar.getInstance())));
+    }
+
+    @Test
+    public void friendsAreFoundOnBothSidesOfThePair() {
+        // u025000 is username2 for the 8 users before it and username1 for the 8 after it
+        assertEquals(2 * FRIENDS_PER_USER, connector.findFriendsFromUser(new User("u025000", "password", Calendar.getInstance())).size());
+    }
+
+    // every table access of the plan goes through a key and reads about as many rows as it returns
+    private static void assertIndexed(String sql, String... params) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < params.length; i++) {
+                statement.setString(i + 1, params[i]);
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getString("table") == null || !rs.getString("table").equals("friends")) {
+                        continue; // union result
+                    }
+                    String type = rs.getString("type");
+                    assertTrue(Set.of("const", "eq_ref", "ref", "range").contains(type), sql + " scans friends: " + type);
+                    assertTrue(Set.of("PRIMARY", "idx_friends_reverse").contains(rs.getString("key")), sql + " uses key " + rs.getString("key"));
+                    assertTrue(rs.getLong("rows") <= 2 * FRIENDS_PER_USER, sql + " examines " + rs.getLong("rows") + " rows");
+                }
+            }
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package Database;
 
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.bson.Document;
 import org.junit.jupiter.api.*;
 import server.Database.MongoDBConnector;
+import server.Database.RoutineQuery;
 import server.Model.*;
 import server.Utils.LoggerService;
+import server.Utils.PropertiesLoader;
 
 import javax.swing.text.html.Option;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,6 +23,8 @@ import static org.junit.jupiter.api.Assertions.*;
 public class RoutinesDBTests {
 
     private static MongoDBConnector connector;
+    // plans are read straight from the collection, the connector has no api for them
+    private static MongoClient explainClient;
 
     @BeforeEach
     public void setUp() {
@@ -24,8 +33,14 @@ public class RoutinesDBTests {
         connector.removeAllRoutines();
     }
 
+    @BeforeAll
+    public static void openExplainClient() {
+        explainClient = MongoClients.create(PropertiesLoader.getProperty("database.mongodb.url"));
+    }
+
     @AfterAll
     public static void tearDown() {
+        explainClient.close();
         //connector.removeAllRoutines();
         connector.closeDatabase();
     }
@@ -425,4 +440,125 @@ public class RoutinesDBTests {
         assertFalse(secondDelete, "Routine cannot be deleted twice");
     }
 
+    @Test
+    public void testStreamRoutinesInPages() {
+        for (int id = 1; id <= 25; id++) {
+            connector.addRoutine(new Routine(id, "Routine " + id));
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        Integer after = null;
+        int pages = 0;
+        do {
+            RoutineQuery query = RoutineQuery.builder().after(after).limit(10).fields(List.of(RoutineQuery.Field.ROUTINE_NAME)).build();
+            List<Routine> page;
+            try (Stream<Routine> routines = connector.streamRoutines(query)) {
+                page = routines.toList();
+            }
+            page.forEach(routine -> ids.add(routine.getId()));
+            after = page.size() == 10 ? page.getLast().getId() : null;
+            pages++;
+        } while (after != null);
+
+        assertEquals(3, pages);
+        assertEquals(IntStream.rangeClosed(1, 25).boxed().toList(), ids);
+        try (Stream<Routine> routines = connector.streamRoutines(RoutineQuery.builder().build())) {
+            assertEquals(25, routines.count());
+        }
+    }
+
+    @Test
+    public void testRoutinesOfAnOwnerAreAnIndexRange() {
+        for (int id = 1; id <= 30; id++) {
+            connector.addRoutine(new Routine(id, "Routine " + id, new ArrayList<>(), id % 2 == 0 ? "Alberto" : "Maria"));
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        Integer after = null;
+        do {
+            RoutineQuery query = RoutineQuery.builder().owner("Alberto").after(after).limit(10).build();
+            List<Routine> page;
+            try (Stream<Routine> routines = connector.streamRoutines(query)) {
+                page = routines.toList();
+            }
+            page.forEach(routine -> {
+                assertEquals("Alberto", routine.getOwner());
+                ids.add(routine.getId());
+            });
+            after = page.size() == 10 ? page.getLast().getId() : null;
+        } while (after != null);
+        assertEquals(IntStream.rangeClosed(1, 15).map(i -> i * 2).boxed().toList(), ids);
+
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan(RoutineQuery.builder().owner("Alberto").after(10).limit(10).build()), stages);
+        assertTrue(stages.contains("IXSCAN " + MongoDBConnector.OWNER_INDEX), "Plan stages: " + stages);
+        assertFalse(stages.contains("COLLSCAN"), "Plan stages: " + stages);
+        assertFalse(stages.contains("SORT"), "The index is already in the order of the pages. Plan stages: " + stages);
+    }
+
+    @Test
+    public void testFiltersAreIndexRanges() {
+        GymExercise benchPress = new GymExercise("Bench Press", Exercise.SetsType.WEIGHTED_REPETITIONS, null, null, null, null, null, null);
+        GymExercise pushUp = new GymExercise("Push Up", Exercise.SetsType.REPETITIONS, null, null, null, null, null, null);
+        CardioExercise sprint = new CardioExercise();
+        sprint.setExerciseName("100m Sprint");
+        sprint.setSetsType(Exercise.SetsType.TIME_DISTANCE);
+        for (int id = 1; id <= 30; id++) {
+            List<ExerciseSet> exerciseSets = new ArrayList<>();
+            exerciseSets.add(new ExerciseSet(id % 3 == 0 ? sprint : pushUp, new ArrayList<>()));
+            if (id % 2 == 0) {
+                exerciseSets.add(new ExerciseSet(benchPress, new ArrayList<>()));
+            }
+            connector.addRoutine(new Routine(id, (id <= 10 ? "Upper " : "Lower ") + id, exerciseSets));
+        }
+
+        RoutineQuery bench = RoutineQuery.builder().containsExercise(List.of("Bench Press")).after(10).limit(5).build();
+        assertEquals(List.of(12, 14, 16, 18, 20), ids(bench));
+        RoutineQuery pushOrSprint = RoutineQuery.builder().containsExercise(List.of("Bench Press"))
+                .containsExercise(List.of("Push Up", "100m Sprint")).limit(4).build();
+        assertEquals(List.of(2, 4, 6, 8), ids(pushOrSprint));
+        RoutineQuery cardio = RoutineQuery.builder().setsType(Exercise.SetsType.TIME_DISTANCE).limit(20).build();
+        assertEquals(IntStream.rangeClosed(1, 10).map(i -> i * 3).boxed().toList(), ids(cardio));
+        RoutineQuery upper = RoutineQuery.builder().namePrefix("Upper").limit(20).build();
+        assertEquals(IntStream.rangeClosed(1, 10).boxed().toList(), ids(upper));
+        assertEquals(List.of(), ids(RoutineQuery.builder().namePrefix("Upper.*").limit(20).build()));
+
+        // the planner may also pick the index on _id for the order of the pages, but never a collection scan
+        for (RoutineQuery query : List.of(bench, pushOrSprint, cardio, upper)) {
+            List<String> stages = new ArrayList<>();
+            collectStages(winningPlan(query), stages);
+            assertFalse(stages.contains("COLLSCAN"), "Plan stages: " + stages);
+            assertTrue(stages.stream().anyMatch(stage -> stage.startsWith("IXSCAN")), "Plan stages: " + stages);
+        }
+        List<String> stages = new ArrayList<>();
+        collectStages(winningPlan(bench), stages);
+        assertTrue(stages.contains("IXSCAN " + MongoDBConnector.EXERCISE_INDEX), "Plan stages: " + stages);
+    }
+
+    private static List<Integer> ids(RoutineQuery query) {
+        try (Stream<Routine> routines = connector.streamRoutines(query)) {
+            return routines.map(Routine::getId).toList();
+        }
+    }
+
+    // plan the server chooses for the query, as MongoDBConnector sends it
+    private static Object winningPlan(RoutineQuery query) {
+        Document plan = explainClient.getDatabase(PropertiesLoader.getProperty("database.mongodb.name")).getCollection("routines")
+                .find(query.filter()).projection(query.projection()).sort(query.sort()).explain();
+        return plan.get("queryPlanner", Document.class).get("winningPlan");
+    }
+
+    // stages of the plan, with the index they scan
+    private static void collectStages(Object plan, List<String> stages) {
+        if (plan instanceof Document document) {
+            if (document.containsKey("stage")) {
+                String stage = document.getString("stage");
+                stages.add(document.containsKey("indexName") ? stage + " " + document.getString("indexName") : stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (plan instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
 }
@@ -0,0 +1,84 @@
+package Database;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import server.Database.MySqlConnector;
+import server.Model.FriendRequest;
+import server.Model.User;
+import server.Utils.PropertiesLoader;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Calendar;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StatementSoakDBTest {
+
+    private static MySqlConnector connector;
+    private static Connection monitor;
+
+    @BeforeAll
+    public static void setup() throws SQLException {
+        connector = new MySqlConnector();
+        connector.connectDatabase();
+        connector.truncateTables();
+        monitor = DriverManager.getConnection(PropertiesLoader.getProperty("database.sql.url"),
+                PropertiesLoader.getProperty("database.sql.username"), PropertiesLoader.getProperty("database.sql.password"));
+    }
+
+    @AfterAll
+    public static void cleanup() throws SQLException {
+        connector.truncateTables();
+        connector.closeDatabse();
+        monitor.close();
+    }
+
+    @Test
+    public void preparedStatementCountStaysFlat() throws SQLException, InterruptedException {
+        User alberto = new User("Alberto", "password", Calendar.getInstance());
+        User unai = new User("Unai", "password", Calendar.getInstance());
+        connector.addUser(alberto);
+        connector.addUser(unai);
+        FriendRequest friendRequest = new FriendRequest(alberto, unai, Calendar.getInstance());
+        connector.addFriendRequest(friendRequest);
+
+        soak(200); // every pooled connection has prepared its statements
+        long warm = preparedStatementCount();
+        soak(5000);
+        long after = preparedStatementCount();
+
+        assertTrue(after <= warm, String.format("Prepared statements grew from %d to %d", warm, after));
+    }
+
+    private void soak(int iterations) throws InterruptedException {
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < iterations; i++) {
+                executor.submit(() -> {
+                    connector.findByUsername("Alberto");
+                    connector.findFriendRequestsByRequester(new User("Alberto", "", Calendar.getInstance()));
+                    connector.findFriendsFromUser(new User("Unai", "", Calendar.getInstance()));
+                    connector.friendshipExists(new FriendRequest(new User("Alberto", "", Calendar.getInstance()),
+                            new User("Unai", "", Calendar.getInstance()), Calendar.getInstance()));
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(2, TimeUnit.MINUTES);
+        }
+    }
+
+    private static long preparedStatementCount() throws SQLException {
+        try (Statement statement = monitor.createStatement();
+             ResultSet rs = statement.executeQuery("SHOW GLOBAL STATUS LIKE 'Prepared_stmt_count'")) {
+            rs.next();
+            return rs.getLong(2);
+        }
+    }
+}
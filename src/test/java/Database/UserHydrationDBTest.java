@@ -0,0 +1,141 @@
+package Database;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.Database.MySqlConnector;
+import server.Database.QueryStats;
+import server.Model.FriendRequest;
+import server.Model.FriendRequestSummary;
+import server.Model.User;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UserHydrationDBTest {
+
+    private static final int USERS = 20;
+    private static MySqlConnector connector;
+
+    @BeforeAll
+    public static void setup() throws SQLException {
+        connector = new MySqlConnector();
+        connector.connectDatabase();
+    }
+
+    @AfterAll
+    public static void cleanup() {
+        connector.truncateTables();
+        connector.closeDatabse();
+    }
+
+    // user0 is friend of everyone, and every user is friend of the next one
+    @BeforeEach
+    public void createUsers() {
+        connector.truncateTables();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("user" + i, "password", Calendar.getInstance());
+            connector.addUser(user);
+            users.add(user);
+        }
+        for (int i = 1; i < USERS; i++) {
+            connector.addFriend(new FriendRequest(users.get(0), users.get(i), Calendar.getInstance()));
+            if (i + 1 < USERS) {
+                connector.addFriend(new FriendRequest(users.get(i), users.get(i + 1), Calendar.getInstance()));
+            }
+        }
+    }
+
+    @Test
+    public void findAllUsersLoadsTheWholeGraphWithTwoQueries() {
+        long before = QueryStats.currentThread();
+        List<User> users = connector.findAllUsers();
+        assertEquals(USERS, users.size());
+        assertEquals(2, QueryStats.currentThread() - before);
+
+        // every friend is already in memory
+        int friendships = users.stream().mapToInt(user -> user.getFriends().stream()
+                .mapToInt(friend -> friend.getFriends().size()).sum()).sum();
+        assertEquals(2, QueryStats.currentThread() - before);
+        assertEquals(true, friendships > 0);
+    }
+
+    @Test
+    public void streamAllUsersReadsTheFriendshipsOfEachChunk() {
+        long before = QueryStats.currentThread();
+        List<User> users;
+        try (Stream<User> stream = connector.streamAllUsers()) {
+            users = stream.toList();
+        }
+        assertEquals(USERS, users.size());
+        assertEquals(2, QueryStats.currentThread() - before); // the cursor and the friendships of its only chunk
+
+        User user5 = users.stream().filter(user -> user.getUsername().equals("user5")).findFirst().orElseThrow();
+        assertEquals(Set.of("user0", "user4", "user6"), user5.getFriendUsernames());
+        assertEquals(Set.of("user0", "user4", "user6"), user5.getFriends().stream().map(User::getUsername).collect(Collectors.toSet()));
+        assertEquals(2, QueryStats.currentThread() - before); // friends in the same chunk are already in memory
+    }
+
+    @Test
+    public void friendsOfAUserAreLoadedInOneBatch() {
+        long before = QueryStats.currentThread();
+        User user0 = connector.findByUsername("user0").orElseThrow();
+        assertEquals(2, QueryStats.currentThread() - before);
+        assertEquals(USERS - 1, user0.getFriendUsernames().size());
+        assertEquals(2, QueryStats.currentThread() - before); // usernames don't need the friends
+
+        Set<User> friends = user0.getFriends();
+        assertEquals(USERS - 1, friends.size());
+        assertEquals(4, QueryStats.currentThread() - before);
+
+        // the friends of the friends are known by username
+        User user5 = friends.stream().filter(friend -> friend.getUsername().equals("user5")).findFirst().orElseThrow();
+        assertEquals(Set.of("user0", "user4", "user6"), user5.getFriendUsernames());
+        assertEquals(Set.of("user0", "user4", "user6"), user5.getFriends().stream().map(User::getUsername).collect(Collectors.toSet()));
+        assertEquals(4, QueryStats.currentThread() - before);
+    }
+
+    @Test
+    public void findUsersByUsernamesIgnoresMissingOnes() {
+        long before = QueryStats.currentThread();
+        List<User> users = connector.findUsersByUsernames(List.of("user1", "user2", "user3", "pochoclo"));
+        assertEquals(Set.of("user1", "user2", "user3"), users.stream().map(User::getUsername).collect(Collectors.toSet()));
+        assertEquals(2, QueryStats.currentThread() - before);
+    }
+
+    @Test
+    public void friendRequestSummariesNeedOneQuery() {
+        for (int i = 2; i < USERS; i++) {
+            connector.addFriendRequest(new FriendRequest(new User("user" + i, "password", Calendar.getInstance()),
+                    new User("user1", "password", Calendar.getInstance()), Calendar.getInstance()));
+        }
+        long before = QueryStats.currentThread();
+        List<FriendRequestSummary> incoming = connector.findIncomingRequestSummaries("user1");
+        assertEquals(USERS - 2, incoming.size());
+        assertEquals(1, QueryStats.currentThread() - before);
+        assertEquals(1, connector.findOutgoingRequestSummaries("user7").size());
+        assertEquals(2, QueryStats.currentThread() - before);
+    }
+
+    @Test
+    public void friendRequestsLoadTheirUsersInOneBatch() {
+        User user1 = connector.findByUsername("user1").orElseThrow();
+        for (int i = 2; i < USERS; i++) {
+            connector.addFriendRequest(new FriendRequest(user1, new User("user" + i, "password", Calendar.getInstance()),
+                    Calendar.getInstance()));
+        }
+        long before = QueryStats.currentThread();
+        Set<FriendRequest> requests = connector.findFriendRequestsByRequester(user1);
+        assertEquals(USERS - 2, requests.size());
+        assertEquals(3, QueryStats.currentThread() - before); // requests, users and their friendships
+    }
+}
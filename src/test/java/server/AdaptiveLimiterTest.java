@@ -0,0 +1,76 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import server.Utils.AdaptiveLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void rejectsOverTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 2, 1, 10);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(1, limiter.getRejected());
+
+        limiter.release(FAST, true);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void limitGrowsWhileLatencyIsStable() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 10, 1, 100);
+
+        for (int i = 0; i < 50; i++) {
+            runFullBatch(limiter, FAST);
+        }
+
+        assertTrue(limiter.getLimit() > 10, "Limit should grow, was " + limiter.getLimit());
+    }
+
+    @Test
+    public void limitShrinksWhenLatencyRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 50, 5, 100);
+
+        for (int i = 0; i < 5; i++) {
+            runFullBatch(limiter, FAST);
+        }
+        int before = limiter.getLimit();
+        for (int i = 0; i < 5; i++) {
+            runFullBatch(limiter, SLOW);
+        }
+
+        assertTrue(limiter.getLimit() < before, String.format("Limit should shrink from %d, was %d", before, limiter.getLimit()));
+    }
+
+    @Test
+    public void failuresShrinkTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter("test", 20, 5, 100);
+
+        assertTrue(limiter.tryAcquire());
+        limiter.release(FAST, false);
+
+        assertEquals(18, limiter.getLimit());
+    }
+
+    // fills the limiter and releases every request with the same latency
+    private static void runFullBatch(AdaptiveLimiter limiter, long rttNanos) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(rttNanos, true);
+        }
+    }
+}
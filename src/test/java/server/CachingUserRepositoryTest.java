@@ -0,0 +1,159 @@
+package server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.Database.CachingUserRepository;
+import server.Database.UserRepository;
+import server.Model.FriendRequest;
+import server.Model.User;
+
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachingUserRepositoryTest {
+
+    private static final long TTL = 1_000;
+
+    private final AtomicLong clock = new AtomicLong();
+    private UserRepository source;
+    private CachingUserRepository cache;
+    private User bob;
+    private User alice;
+
+    @BeforeEach
+    public void setUp() {
+        alice = new User("alice", "alicePassword", Calendar.getInstance());
+        bob = new User("bob", "bobPassword", Calendar.getInstance(), Set.<Supplier<User>>of(() -> alice));
+        source = mock(UserRepository.class);
+        when(source.findByUsername(anyString())).thenReturn(Optional.empty());
+        when(source.findByUsername("bob")).thenReturn(Optional.of(bob));
+        when(source.findByUsername("alice")).thenReturn(Optional.of(alice));
+        when(source.findUsersByUsernames(any())).thenReturn(List.of(alice));
+        cache = new CachingUserRepository(source, 3, TTL, clock::get);
+    }
+
+    @Test
+    public void repeatedLookupsAreServedFromTheCache() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals("bobPassword", cache.findByUsername("bob").orElseThrow().getPassword());
+        }
+        verify(source, times(1)).findByUsername("bob");
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.75, (double) cache.stats().get("hitRate"));
+    }
+
+    @Test
+    public void cachedUsersCanBeChangedByCallers() {
+        cache.findByUsername("bob");
+        User cached = cache.findByUsername("bob").orElseThrow();
+        cached.setPassword("");
+        assertEquals("bobPassword", cache.findByUsername("bob").orElseThrow().getPassword());
+        assertEquals(Set.of("alice"), cached.getFriendUsernames());
+        assertEquals("alice", cached.getFriends().iterator().next().getUsername());
+    }
+
+    @Test
+    public void missingUsersAreCachedUntilAdded() {
+        assertTrue(cache.findByUsername("carol").isEmpty());
+        assertTrue(cache.findByUsername("carol").isEmpty());
+        verify(source, times(1)).findByUsername("carol");
+
+        User carol = new User("carol", "carolPassword", Calendar.getInstance());
+        when(source.findByUsername("carol")).thenReturn(Optional.of(carol));
+        cache.addUser(carol);
+        verify(source).addUser(carol);
+        assertEquals("carol", cache.findByUsername("carol").orElseThrow().getUsername());
+    }
+
+    @Test
+    public void entriesExpireAfterTheTtl() {
+        cache.findByUsername("bob");
+        clock.addAndGet(TTL - 1);
+        cache.findByUsername("bob");
+        verify(source, times(1)).findByUsername("bob");
+        clock.addAndGet(1);
+        cache.findByUsername("bob");
+        verify(source, times(2)).findByUsername("bob");
+    }
+
+    @Test
+    public void friendshipChangesInvalidateBothUsers() {
+        cache.findByUsername("bob");
+        cache.findByUsername("alice");
+        User carol = new User("carol", "carolPassword", Calendar.getInstance());
+        FriendRequest friendRequest = new FriendRequest(bob, alice, Calendar.getInstance());
+
+        cache.addFriendRequest(friendRequest);
+        cache.findByUsername("bob");
+        verify(source, times(1)).findByUsername("bob"); // requests are not part of the user
+
+        cache.addFriend(friendRequest);
+        cache.findByUsername("bob");
+        cache.findByUsername("alice");
+        verify(source, times(2)).findByUsername("bob");
+        verify(source, times(2)).findByUsername("alice");
+
+        cache.findByUsername("carol");
+        cache.deleteFriend(new FriendRequest(carol, alice, Calendar.getInstance()));
+        verify(source).deleteFriend(any());
+        cache.findByUsername("bob");
+        cache.findByUsername("alice");
+        verify(source, times(2)).findByUsername("bob");
+        verify(source, times(3)).findByUsername("alice");
+    }
+
+    @Test
+    public void friendsAreReadFromTheCachedUser() {
+        cache.findByUsername("bob");
+        assertEquals(Set.of("alice"), cache.findFriendsFromUser(bob));
+        verify(source, never()).findFriendsFromUser(any());
+    }
+
+    @Test
+    public void batchLookupsOnlyLoadTheMissingUsers() {
+        cache.findByUsername("bob");
+        List<User> users = cache.findUsersByUsernames(List.of("bob", "alice", "nobody"));
+        assertEquals(Set.of("bob", "alice"), Set.copyOf(users.stream().map(User::getUsername).toList()));
+        verify(source).findUsersByUsernames(List.of("alice", "nobody"));
+
+        cache.findUsersByUsernames(List.of("bob", "alice", "nobody"));
+        verify(source, times(1)).findUsersByUsernames(any());
+    }
+
+    @Test
+    public void frequentUsersSurviveAScan() {
+        for (int i = 0; i < 5; i++) {
+            cache.findByUsername("bob");
+            cache.findByUsername("alice");
+        }
+        cache.findByUsername("carol");
+        for (int i = 0; i < 50; i++) {
+            cache.findByUsername("scan" + i); // each asked once, so none replaces the users asked before
+        }
+        Map<String, Object> stats = cache.stats();
+        assertEquals(3, stats.get("size"));
+        assertTrue((long) stats.get("rejections") > 0);
+
+        cache.findByUsername("bob");
+        cache.findByUsername("alice");
+        verify(source, times(1)).findByUsername("bob");
+        verify(source, times(1)).findByUsername("alice");
+        assertEquals(53, cache.getMisses());
+    }
+}
@@ -0,0 +1,58 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import server.Utils.Compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompressionTest {
+
+    private static final byte[] BODY = "{\"username\":\"Alberto\",\"password\":\"\"},".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void negotiateEncoding() {
+        assertEquals(Compression.Encoding.IDENTITY, Compression.negotiate((String) null));
+        assertEquals(Compression.Encoding.GZIP, Compression.negotiate("deflate, gzip;q=0.8"));
+        assertEquals(Compression.Encoding.DEFLATE, Compression.negotiate("gzip;q=0, deflate"));
+        assertEquals(Compression.Encoding.GZIP, Compression.negotiate("*"));
+        assertEquals(Compression.Encoding.DEFLATE, Compression.negotiate("gzip;q=0, *"));
+        assertEquals(Compression.Encoding.IDENTITY, Compression.negotiate("*, gzip;q=0, deflate;q=0"));
+        assertEquals(Compression.Encoding.IDENTITY, Compression.negotiate("br"));
+    }
+
+    @Test
+    public void gzipRoundTrip() throws IOException {
+        byte[] compressed = compress(BODY, Compression.Encoding.GZIP);
+        assertTrue(compressed.length < BODY.length);
+        assertEquals(new String(BODY, StandardCharsets.UTF_8),
+                new String(new GZIPInputStream(new ByteArrayInputStream(compressed)).readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void deflateRoundTripWithPooledDeflaters() throws IOException {
+        // several times, so deflaters are reused from the pool after being reset
+        for (int i = 0; i < 3; i++) {
+            byte[] compressed = compress(BODY, Compression.Encoding.DEFLATE);
+            assertEquals(new String(BODY, StandardCharsets.UTF_8),
+                    new String(new InflaterInputStream(new ByteArrayInputStream(compressed)).readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] compress(byte[] body, Compression.Encoding encoding) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream os = Compression.compressingStream(out, encoding)) {
+            os.write(body, 0, 100);
+            os.write(body, 100, body.length - 100);
+        }
+        return out.toByteArray();
+    }
+}
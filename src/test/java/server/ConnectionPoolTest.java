@@ -0,0 +1,170 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import server.Database.ConnectionPool;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolTest {
+
+    private final List<Connection> created = new ArrayList<>();
+
+    private Connection newConnection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(statement.executeQuery()).thenAnswer(query -> mock(ResultSet.class));
+            return statement;
+        });
+        created.add(connection);
+        return connection;
+    }
+
+    @Test
+    public void returnedConnectionsAreReused() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 4, 1000, 60_000, 60_000)) {
+            Connection first = pool.getConnection();
+            assertEquals(1, pool.getActive());
+            first.close();
+            assertTrue(first.isClosed());
+            assertEquals(0, pool.getActive());
+            assertEquals(1, pool.getIdle());
+
+            try (Connection second = pool.getConnection()) {
+                second.prepareStatement("SELECT 1");
+            }
+            assertEquals(1, created.size());
+            verify(created.get(0)).prepareStatement("SELECT 1");
+            // giving the connection back doesn't close the real one
+            assertTrue(!created.get(0).isClosed());
+        }
+    }
+
+    @Test
+    public void borrowFailsAfterTimeoutWhenPoolIsExhausted() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 2, 50, 60_000, 60_000)) {
+            Connection first = pool.getConnection();
+            Connection second = pool.getConnection();
+
+            assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+            assertEquals(1L, pool.stats().get("timeouts"));
+
+            first.close();
+            try (Connection third = pool.getConnection()) {
+                assertEquals(2, created.size());
+            }
+            second.close();
+        }
+    }
+
+    @Test
+    public void closedConnectionCantBeUsed() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 1, 50, 60_000, 60_000)) {
+            Connection connection = pool.getConnection();
+            connection.close();
+            connection.close(); // closing twice gives it back only once
+            assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1"));
+            assertEquals(1, pool.getIdle());
+        }
+    }
+
+    @Test
+    public void invalidAndExpiredConnectionsAreReplaced() throws SQLException, InterruptedException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 2, 50, 60_000, 60_000)) {
+            pool.getConnection().close();
+            when(created.get(0).isValid(anyInt())).thenReturn(false);
+            Thread.sleep(600); // only connections idle for a while are validated
+
+            pool.getConnection().close();
+            assertEquals(2, created.size());
+            verify(created.get(0)).close();
+        }
+
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 2, 50, 60_000, 10)) {
+            pool.getConnection().close();
+            Thread.sleep(20);
+            pool.getConnection().close();
+            assertEquals(4, created.size());
+        }
+    }
+
+    @Test
+    public void uncommittedTransactionIsRolledBackWhenReturned() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 1, 50, 60_000, 60_000)) {
+            Connection connection = pool.getConnection();
+            when(created.get(0).getAutoCommit()).thenReturn(false);
+            connection.close();
+            verify(created.get(0)).rollback();
+            verify(created.get(0)).setAutoCommit(true);
+        }
+    }
+
+    @Test
+    public void statementsAreCachedPerConnection() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 1, 50, 60_000, 60_000)) {
+            ResultSet firstResult;
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("SELECT * FROM users WHERE username=?")) {
+                statement.setString(1, "Alberto");
+                firstResult = statement.executeQuery();
+            }
+            // closing the statement closes its result set but keeps the real statement open
+            verify(firstResult).close();
+
+            for (int i = 0; i < 100; i++) {
+                try (Connection connection = pool.getConnection();
+                     PreparedStatement statement = connection.prepareStatement("SELECT * FROM users WHERE username=?")) {
+                    statement.setString(1, "Alberto");
+                    statement.executeQuery();
+                }
+            }
+
+            verify(created.get(0), times(1)).prepareStatement("SELECT * FROM users WHERE username=?");
+            assertEquals(100L, pool.stats().get("statementCacheHits"));
+        }
+    }
+
+    @Test
+    public void statementPreparedTwiceAtOnceIsNotShared() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 1, 50, 60_000, 60_000);
+             Connection connection = pool.getConnection()) {
+            PreparedStatement outer = connection.prepareStatement("SELECT 1");
+            try (PreparedStatement inner = connection.prepareStatement("SELECT 1")) {
+                inner.executeQuery();
+            }
+            outer.executeQuery();
+            outer.close();
+            assertThrows(SQLException.class, outer::executeQuery);
+            verify(created.get(0), times(2)).prepareStatement("SELECT 1");
+        }
+    }
+
+    @Test
+    public void leastRecentlyUsedStatementsAreClosed() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(this::newConnection, 1, 50, 60_000, 60_000, 2);
+             Connection connection = pool.getConnection()) {
+            for (String sql : List.of("SELECT 1", "SELECT 2", "SELECT 3", "SELECT 1")) {
+                connection.prepareStatement(sql).close();
+            }
+            verify(created.get(0), times(2)).prepareStatement("SELECT 1");
+        }
+    }
+}
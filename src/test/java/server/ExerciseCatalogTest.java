@@ -0,0 +1,107 @@
+package server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import server.Database.ExerciseCatalog;
+import server.Database.ExerciseRepository;
+import server.Model.Exercise;
+import server.Model.GymExercise;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExerciseCatalogTest {
+
+    static GymExercise benchPress = new GymExercise("Barbell Bench Press", Exercise.SetsType.WEIGHTED_REPETITIONS,
+            GymExercise.DifficultyLevel.BEGINNER, GymExercise.MuscleGroup.CHEST, GymExercise.Equipment.BARBELL,
+            GymExercise.SingleArm.DOUBLE_ARM, GymExercise.Grip.PRONATED, GymExercise.BodyRegion.UPPER_BODY);
+    static GymExercise dumbbellPress = new GymExercise("Dumbbell Bench Press", Exercise.SetsType.WEIGHTED_REPETITIONS,
+            GymExercise.DifficultyLevel.BEGINNER, GymExercise.MuscleGroup.CHEST, GymExercise.Equipment.DUMBBELL,
+            GymExercise.SingleArm.DOUBLE_ARM, GymExercise.Grip.NEUTRAL, GymExercise.BodyRegion.UPPER_BODY);
+    static GymExercise pushUp = new GymExercise("Push Up", Exercise.SetsType.REPETITIONS,
+            GymExercise.DifficultyLevel.NOVICE, GymExercise.MuscleGroup.CHEST, GymExercise.Equipment.BODYWEIGHT,
+            GymExercise.SingleArm.DOUBLE_ARM, GymExercise.Grip.FLAT_PALM, GymExercise.BodyRegion.UPPER_BODY);
+    static GymExercise hipFlexorRaise = new GymExercise("Hanging Knee Raise", Exercise.SetsType.REPETITIONS,
+            GymExercise.DifficultyLevel.INTERMEDIATE, GymExercise.MuscleGroup.HIP_FLEXORS, GymExercise.Equipment.PULL_UP_BAR,
+            GymExercise.SingleArm.NO_ARMS, GymExercise.Grip.PRONATED, GymExercise.BodyRegion.UNSORTED);
+
+    private ExerciseRepository source;
+    private ExerciseCatalog catalog;
+
+    @BeforeEach
+    public void setup() {
+        source = mock(ExerciseRepository.class);
+        when(source.findAllExercises()).thenReturn(new HashSet<>(Set.of(benchPress, dumbbellPress, pushUp, hipFlexorRaise)));
+        catalog = new ExerciseCatalog(source);
+    }
+
+    private static Set<String> names(Set<Exercise> exercises) {
+        return exercises.stream().map(Exercise::getExerciseName).collect(Collectors.toSet());
+    }
+
+    @Test
+    public void filtersAreIntersected() {
+        assertEquals(Set.of("Barbell Bench Press", "Dumbbell Bench Press", "Push Up"),
+                names(catalog.findExerciseWithFilters(Map.of("muscle_group", "Chest"))));
+        assertEquals(Set.of("Barbell Bench Press", "Dumbbell Bench Press"),
+                names(catalog.findExerciseWithFilters(Map.of("muscle_group", "Chest", "sets_type", "weighted_repetitions"))));
+        assertEquals(Set.of("Dumbbell Bench Press"), names(catalog.findExerciseWithFilters(
+                Map.of("muscle_group", "Chest", "difficulty", "Beginner", "equipment", "Dumbbell"))));
+        assertEquals(Set.of(), catalog.findExerciseWithFilters(Map.of("muscle_group", "Hip Flexors", "grip", "Neutral")));
+        assertEquals(4, catalog.findExerciseWithFilters(Map.of()).size());
+        verify(source, never()).findExerciseWithFilters(anyMap());
+    }
+
+    @Test
+    public void valuesAreReadLikeTheDatabaseStoresThem() {
+        assertEquals(Set.of("Hanging Knee Raise"), names(catalog.findExerciseWithFilters(
+                Map.of("muscle_group", "Hip Flexors", "body_region", "Unsorted*", "single_double_arm", "No Arms"))));
+        assertEquals(Set.of(), catalog.findExerciseWithFilters(Map.of("equipment", "Spaceship")));
+        assertEquals(Set.of("Push Up"), names(catalog.findExerciseWithFilters(Map.of("exercise_name", "push up", "grip", "Flat Palm"))));
+    }
+
+    @Test
+    public void findByNameIgnoresCaseAndAccents() {
+        assertSame(benchPress, catalog.findExerciseByName("barbell bench press").orElseThrow());
+        assertSame(pushUp, catalog.findExerciseByName("Púsh Up").orElseThrow());
+        assertTrue(catalog.findExerciseByName("Deadlift").isEmpty());
+    }
+
+    @Test
+    public void unknownColumnsAreFilteredByTheSource() {
+        Map<String, String> filters = Map.of("primary_muscle_group", "Pectoralis Major", "muscle_group", "Chest");
+        when(source.findExerciseWithFilters(filters)).thenReturn(Set.of(benchPress));
+        assertEquals(Set.of(benchPress), catalog.findExerciseWithFilters(filters));
+    }
+
+    @Test
+    public void refreshLoadsTheNewCatalog() {
+        when(source.findAllExercises()).thenReturn(Set.of(pushUp));
+        catalog.refresh();
+        verify(source, times(2)).findAllExercises();
+        assertEquals(Set.of("Push Up"), names(catalog.findAllExercises()));
+        assertEquals(Set.of(), catalog.findExerciseWithFilters(Map.of("equipment", "Barbell")));
+        assertTrue(catalog.findExerciseByName("Barbell Bench Press").isEmpty());
+    }
+
+    @Test
+    public void exercisesAreImmutable() {
+        // no setters, inherited or not, so an exercise of the catalog can't be changed through any reference
+        assertTrue(Arrays.stream(GymExercise.class.getMethods()).noneMatch(method -> method.getName().startsWith("set")));
+        assertThrows(UnsupportedOperationException.class, () -> catalog.findAllExercises().clear());
+    }
+}
@@ -0,0 +1,182 @@
+package server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import server.Database.ExerciseCatalog;
+import server.Database.ExerciseColumn;
+import server.Database.ExerciseQuery;
+import server.Database.ExerciseRepository;
+import server.Model.Exercise;
+import server.Model.ExercisePage;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ExerciseEndpointsTest extends ServerEndpointsTest {
+
+    @BeforeAll
+    public static void initialize() throws IOException {
+        startServer();
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        stopServer();
+    }
+
+    private static ExerciseCatalog catalog() {
+        ExerciseRepository source = mock(ExerciseRepository.class);
+        when(source.findAllExercises()).thenReturn(Set.of(ExerciseCatalogTest.benchPress, ExerciseCatalogTest.dumbbellPress,
+                ExerciseCatalogTest.pushUp, ExerciseCatalogTest.hipFlexorRaise));
+        return new ExerciseCatalog(source);
+    }
+
+    @Test
+    public void parametersBuildTheQuery() {
+        ExerciseRepository repository = mock(ExerciseRepository.class);
+        when(repository.findExercises(any())).thenReturn(new ExercisePage(List.of(ExerciseCatalogTest.pushUp), "Push Up"));
+        App.attachExerciseRepository(repository);
+        try {
+            HttpResponse<String> response = makeHttpRequest("exercise?muscle_group=Chest&muscle_group=Hip%20Flexors"
+                    + "&difficulty=Novice&after=Dumbbell%20Bench%20Press&limit=1", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            Map<String, Object> page = new ObjectMapper().readValue(response.body(), Map.class);
+            assertEquals("Push Up", page.get("next"));
+            assertEquals("Push Up", ((List<Map<String, Object>>) page.get("exercises")).getFirst().get("exerciseName"));
+
+            ArgumentCaptor<ExerciseQuery> query = ArgumentCaptor.forClass(ExerciseQuery.class);
+            verify(repository).findExercises(query.capture());
+            assertEquals(List.of("Chest", "Hip Flexors"), query.getValue().getFilters().get(ExerciseColumn.MUSCLE_GROUP));
+            assertEquals(List.of("Novice"), query.getValue().getFilters().get(ExerciseColumn.DIFFICULTY));
+            assertEquals("Dumbbell Bench Press", query.getValue().getAfter());
+            assertEquals(1, query.getValue().getLimit());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void invalidParametersAreRejected() {
+        ExerciseRepository repository = mock(ExerciseRepository.class);
+        App.attachExerciseRepository(repository);
+        try {
+            HttpResponse<String> response = makeHttpRequest("exercise?password=1%20OR%201=1", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals("Unknown filter password", response.body());
+
+            response = makeHttpRequest("exercise?limit=100000", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            response = makeHttpRequest("exercise?limit=ten", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals("The limit must be a number", response.body());
+            verify(repository, never()).findExercises(any());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void catalogIsBrowsedInPages() {
+        App.attachExerciseRepository(catalog());
+        try {
+            List<String> names = new ArrayList<>();
+            String next = null;
+            int pages = 0;
+            do {
+                String url = "exercise?limit=3" + (next == null ? "" : "&after=" + next.replace(" ", "%20"));
+                Map<String, Object> page = new ObjectMapper().readValue(makeHttpRequest(url, HttpMethod.GET, "").body(), Map.class);
+                ((List<Map<String, Object>>) page.get("exercises")).forEach(exercise -> names.add((String) exercise.get("exerciseName")));
+                next = (String) page.get("next");
+                pages++;
+            } while (next != null);
+
+            assertEquals(2, pages);
+            assertEquals(List.of("Barbell Bench Press", "Dumbbell Bench Press", "Hanging Knee Raise", "Push Up"), names);
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void searchReturnsRankedExercises() {
+        App.attachExerciseRepository(catalog());
+        try {
+            HttpResponse<String> response = makeHttpRequest("exercise/search?q=dumbel%20bench&limit=2", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            List<Map<String, Object>> exercises = new ObjectMapper().readValue(response.body(), List.class);
+            assertEquals(List.of("Dumbbell Bench Press", "Barbell Bench Press"),
+                    exercises.stream().map(exercise -> exercise.get("exerciseName")).toList());
+
+            response = makeHttpRequest("exercise/search?q=%20", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals("Missing search text", response.body());
+            response = makeHttpRequest("exercise/search?q=press&limit=0", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void catalogMatchesAnyValueOfEachColumn() {
+        ExerciseCatalog catalog = catalog();
+        ExercisePage page = catalog.findExercises(ExerciseQuery.builder()
+                .where(ExerciseColumn.EQUIPMENT, "Barbell", "Bodyweight")
+                .where(ExerciseColumn.MUSCLE_GROUP, "Chest")
+                .build());
+        assertEquals(List.of("Barbell Bench Press", "Push Up"), page.exercises().stream().map(Exercise::getExerciseName).toList());
+        assertNull(page.next());
+
+        page = catalog.findExercises(ExerciseQuery.builder().where(ExerciseColumn.GRIP, "Pronated").limit(1).build());
+        assertEquals("Barbell Bench Press", page.next());
+        page = catalog.findExercises(ExerciseQuery.builder().where(ExerciseColumn.GRIP, "Pronated").after(page.next()).limit(1).build());
+        assertEquals(List.of("Hanging Knee Raise"), page.exercises().stream().map(Exercise::getExerciseName).toList());
+        assertNull(page.next());
+    }
+
+    @Test
+    public void queriesOfTheSameShapeShareTheirSql() throws SQLException {
+        ExerciseQuery chest = ExerciseQuery.builder().where(ExerciseColumn.MUSCLE_GROUP, "Chest", "Back", "Biceps").build();
+        ExerciseQuery legs = ExerciseQuery.builder().where(ExerciseColumn.MUSCLE_GROUP, "Quadriceps", "Calves", "Glutes", "Hamstrings").build();
+        assertSame(chest.sql("exercises"), legs.sql("exercises")); // both lists are padded to 4
+        assertEquals("SELECT exercise_name, sets_type, difficulty, muscle_group, equipment, single_double_arm, grip, body_region "
+                + "FROM exercises WHERE muscle_group IN (?,?,?,?) ORDER BY exercise_name LIMIT ?", chest.sql("exercises"));
+
+        ExerciseQuery next = ExerciseQuery.builder().where(ExerciseColumn.MUSCLE_GROUP, "Chest").after("Push Up").limit(10).build();
+        assertFalse(next.sql("exercises").equals(chest.sql("exercises")));
+        PreparedStatement statement = mock(PreparedStatement.class);
+        next.bind(statement);
+        verify(statement).setString(1, "Chest");
+        verify(statement).setString(2, "Push Up");
+        verify(statement).setInt(3, 11);
+    }
+
+    @Test
+    public void builderRejectsInvalidQueries() {
+        assertThrows(IllegalArgumentException.class, () -> ExerciseQuery.builder().limit(0));
+        assertThrows(IllegalArgumentException.class, () -> ExerciseQuery.builder().limit(ExerciseQuery.MAX_LIMIT + 1));
+        assertThrows(IllegalArgumentException.class, () -> ExerciseQuery.builder().where(ExerciseColumn.GRIP, List.of()));
+    }
+}
@@ -0,0 +1,100 @@
+package server;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import server.Database.ExerciseSearchIndex;
+import server.Model.Exercise;
+import server.Model.GymExercise;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExerciseSearchIndexTest {
+
+    private static final String[] QUERIES = {"clubbell press", "barb ben", "dumbel curl", "push", "kettlebel swing",
+            "pull up", "sq", "landmine row", "stability ball t", "single arm dumbbell overhead press"};
+
+    private static List<Exercise> catalog;
+    private static ExerciseSearchIndex index;
+
+    // the whole catalog, with the names of the exercises in the database script
+    @BeforeAll
+    public static void loadCatalog() throws IOException {
+        String script = Files.readString(Path.of("database_scripts", "gym_exercises.sql"), StandardCharsets.UTF_8);
+        Matcher matcher = Pattern.compile("\\('((?:[^'\\\\]|\\\\.)*)'").matcher(script);
+        catalog = new ArrayList<>();
+        while (matcher.find()) {
+            catalog.add(exercise(matcher.group(1).replace("\\'", "'")));
+        }
+        index = new ExerciseSearchIndex(catalog);
+    }
+
+    private static Exercise exercise(String name) {
+        return new GymExercise(name, Exercise.SetsType.REPETITIONS, null, null, null, null, null, null);
+    }
+
+    private static List<String> search(String text, int limit) {
+        return index.search(text, limit).stream().map(Exercise::getExerciseName).toList();
+    }
+
+    @Test
+    public void wholeCatalogIsIndexed() {
+        assertEquals(2988, catalog.size());
+    }
+
+    @Test
+    public void exactNameRanksFirst() {
+        assertEquals("Barbell Bench Press", search("barbell bench press", 5).getFirst());
+        assertEquals("Clubbell Torch Press", search("clubbell torch press", 5).getFirst());
+    }
+
+    @Test
+    public void partialWordsAreCompleted() {
+        assertEquals("Barbell Bench Press", search("barb bench pr", 5).getFirst());
+        search("clubbell press", 10).forEach(name -> assertTrue(name.contains("Clubbell") && name.contains("Press"), name));
+    }
+
+    @Test
+    public void typosAreTolerated() {
+        assertEquals("Clubbell Torch Press", search("clubel torch pres", 5).getFirst());
+        assertTrue(search("barbel bench pres", 5).contains("Barbell Bench Press"));
+    }
+
+    @Test
+    public void resultsAreBoundedAndAccentsIgnored() {
+        assertEquals(3, search("press", 3).size());
+        assertEquals(search("press", 3), search("PRÉSS", 3));
+        assertEquals(List.of(), search("  ", 3));
+        assertEquals(List.of(), search("zzzzqqq", 3));
+    }
+
+    /**
+     * Benchmark over the full catalog: after warming up, the mean time of a search must stay under a millisecond
+     * (tens of microseconds without the coverage agent). Only run with -Pbenchmark.
+     */
+    @Test
+    @Tag("benchmark")
+    public void searchTakesMicroseconds() {
+        for (int i = 0; i < 2000; i++) {
+            index.search(QUERIES[i % QUERIES.length], 10);
+        }
+        int searches = 5000;
+        long start = System.nanoTime();
+        for (int i = 0; i < searches; i++) {
+            index.search(QUERIES[i % QUERIES.length], 10);
+        }
+        long meanMicros = TimeUnit.NANOSECONDS.toMicros((System.nanoTime() - start) / searches);
+        assertTrue(meanMicros < 1000, "Mean search time " + meanMicros + " us");
+    }
+}
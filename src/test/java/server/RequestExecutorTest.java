@@ -0,0 +1,70 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import server.Utils.RequestExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestExecutorTest {
+
+    @Test
+    public void virtualExecutorRunsRequestsConcurrently() throws InterruptedException {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.VIRTUAL, 50, 0, 0);
+        CountDownLatch started = new CountDownLatch(50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 50; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+        }
+
+        assertTrue(started.await(5, TimeUnit.SECONDS), "All requests should be running at the same time");
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void virtualExecutorRejectsOverConcurrencyAndQueue() {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.VIRTUAL, 2, 2, 0);
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 4; i++) {
+            executor.execute(() -> awaitQuietly(release));
+        }
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+        assertEquals(1, executor.getRejected());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void platformExecutorRejectsWhenQueueIsFull() {
+        RequestExecutor executor = new RequestExecutor(RequestExecutor.Mode.PLATFORM, 1, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+        assertEquals(1, executor.getRejected());
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
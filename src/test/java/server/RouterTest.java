@@ -0,0 +1,140 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.junit.jupiter.api.Test;
+import server.Controllers.Router;
+import server.Utils.AdaptiveLimiter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RouterTest {
+
+    private HttpExchange exchange(String method, String path) {
+        HttpExchange exchange = mock(HttpExchange.class);
+        when(exchange.getRequestMethod()).thenReturn(method);
+        when(exchange.getRequestURI()).thenReturn(URI.create(path));
+        when(exchange.getResponseHeaders()).thenReturn(new Headers());
+        when(exchange.getResponseBody()).thenReturn(new ByteArrayOutputStream());
+        return exchange;
+    }
+
+    @Test
+    public void dispatchesToRegisteredRoute() throws IOException {
+        HttpHandler users = mock(HttpHandler.class);
+        HttpHandler accept = mock(HttpHandler.class);
+        Router router = new Router().get("/user", users).post("/user/friend/accept", accept);
+
+        HttpExchange exchange = exchange("POST", "/user/friend/accept");
+        router.dispatch(exchange);
+        verify(accept).handle(exchange);
+        verify(users, never()).handle(any());
+
+        HttpExchange trailingSlash = exchange("GET", "/user/");
+        router.dispatch(trailingSlash);
+        verify(users).handle(trailingSlash);
+    }
+
+    @Test
+    public void literalSegmentsTakePrecedenceOverParameters() throws IOException {
+        HttpHandler byId = mock(HttpHandler.class);
+        HttpHandler mine = mock(HttpHandler.class);
+        Router router = new Router().get("/routine/{id}", byId).get("/routine/mine", mine);
+
+        HttpExchange exchange = exchange("GET", "/routine/mine");
+        router.dispatch(exchange);
+        verify(mine).handle(exchange);
+
+        HttpExchange withParam = exchange("GET", "/routine/42");
+        router.dispatch(withParam);
+        verify(byId).handle(withParam);
+        verify(withParam).setAttribute(any(), eq(Map.of("id", "42")));
+    }
+
+    @Test
+    public void unknownPathAnswersNotFound() throws IOException {
+        Router router = new Router().get("/user/friends", mock(HttpHandler.class));
+
+        HttpExchange exchange = exchange("GET", "/user/pochoclo");
+        router.dispatch(exchange);
+        verify(exchange).sendResponseHeaders(eq(HttpURLConnection.HTTP_NOT_FOUND), anyLong());
+
+        // intermediate segments without handlers are not endpoints
+        HttpExchange intermediate = exchange("GET", "/user");
+        router.dispatch(intermediate);
+        verify(intermediate).sendResponseHeaders(eq(HttpURLConnection.HTTP_NOT_FOUND), anyLong());
+    }
+
+    @Test
+    public void knownPathWithOtherMethodAnswersMethodNotAllowed() throws IOException {
+        Router router = new Router().post("/user/friend", mock(HttpHandler.class)).delete("/user/friend", mock(HttpHandler.class));
+
+        HttpExchange exchange = exchange("GET", "/user/friend");
+        router.dispatch(exchange);
+        verify(exchange).sendResponseHeaders(eq(HttpURLConnection.HTTP_BAD_METHOD), anyLong());
+        assertEquals("DELETE, POST", exchange.getResponseHeaders().getFirst("Allow"));
+    }
+
+    @Test
+    public void duplicatedRouteIsRejected() {
+        Router router = new Router().get("/user", mock(HttpHandler.class));
+        assertThrows(IllegalStateException.class, () -> router.get("/user/", mock(HttpHandler.class)));
+    }
+
+    @Test
+    public void fullRouteAnswersServiceUnavailable() throws IOException {
+        CountDownLatch release = new CountDownLatch(1);
+        HttpHandler slow = exchange -> awaitQuietly(release);
+        Router router = new Router().get("/user/friends", slow);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (int i = 0; i < 32; i++) { // server.limit.initial
+            executor.submit(() -> {
+                router.dispatch(exchange("GET", "/user/friends"));
+                return null;
+            });
+        }
+
+        try {
+            HttpExchange rejected = exchange("GET", "/user/friends");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (AdaptiveLimiter.stats().get("GET /user/friends") instanceof Map<?, ?> stats
+                    && (int) stats.get("inFlight") < 32 && System.currentTimeMillis() < deadline) {
+                Thread.onSpinWait();
+            }
+            router.dispatch(rejected);
+            verify(rejected).sendResponseHeaders(eq(HttpURLConnection.HTTP_UNAVAILABLE), anyLong());
+            assertEquals("1", rejected.getResponseHeaders().getFirst("Retry-After"));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package server;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+import server.Database.RoutineCodec;
+import server.Model.Exercise;
+import server.Model.ExerciseSet;
+import server.Model.GymExercise;
+import server.Model.Routine;
+import server.Model.Set;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RoutineCodecTest {
+
+    private static final CodecRegistry registry = RoutineCodec.registry();
+    private static final RoutineCodec codec = (RoutineCodec) registry.get(Routine.class);
+
+    private static Routine routine(int exercises, int setsPerExercise) {
+        Exercise.SetsType[] types = Exercise.SetsType.values();
+        List<ExerciseSet> exerciseSets = new ArrayList<>();
+        for (int e = 0; e < exercises; e++) {
+            Exercise exercise = new GymExercise("Exercise " + e, types[e % types.length], null, null, null, null, null, null);
+            List<Set> sets = new ArrayList<>();
+            for (int s = 0; s < setsPerExercise; s++) {
+                sets.add(Set.builder().setType(Set.SetType.NORMAL).reps(8 + s).weight(60.5 + s).distance(1.5).duration(30 + s).build());
+            }
+            exerciseSets.add(new ExerciseSet(exercise, sets));
+        }
+        return new Routine(7, "Upper body", exerciseSets);
+    }
+
+    private static BsonDocument encode(Routine routine) {
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), routine, EncoderContext.builder().build());
+        return document;
+    }
+
+    private static Routine decode(BsonDocument document) {
+        return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+    }
+
+    @Test
+    public void routinesAreReadAsWritten() {
+        Routine routine = routine(4, 3);
+        routine.setOwner("Alberto");
+        Routine read = decode(encode(routine));
+        assertEquals(7, read.getId());
+        assertEquals("Alberto", read.getOwner());
+        assertEquals("Upper body", read.getRoutineName());
+        assertEquals(4, read.getExerciseSets().size());
+
+        ExerciseSet weighted = read.getExerciseSets().getFirst();
+        assertEquals(Exercise.SetsType.WEIGHTED_REPETITIONS, weighted.getExercise().getSetsType());
+        assertEquals("Exercise 0", weighted.getExercise().getExerciseName());
+        assertEquals(List.of(8, 9, 10), weighted.getSets().stream().map(Set::getReps).toList());
+        assertEquals(61.5, weighted.getSets().get(1).getWeight());
+        assertEquals(0, weighted.getSets().get(1).getDuration()); // not used by the sets type
+
+        ExerciseSet cardio = read.getExerciseSets().get(3);
+        assertEquals(Exercise.SetsType.TIME_DISTANCE, cardio.getExercise().getSetsType());
+        assertEquals(1.5, cardio.getSets().getFirst().getDistance());
+        assertEquals(30, cardio.getSets().getFirst().getDuration());
+    }
+
+    @Test
+    public void onlyTheFieldsOfTheSetsTypeAreWritten() {
+        BsonDocument document = encode(routine(4, 1));
+        List<String> fields = document.getArray("exerciseSets").stream()
+                .map(exerciseSet -> String.join(",", exerciseSet.asDocument().getArray("sets").getFirst().asDocument().keySet()))
+                .toList();
+        assertEquals(List.of("type,weight,reps", "type,reps", "type,duration", "type,duration,distance"), fields);
+    }
+
+    @Test
+    public void emptyRoutinesAndDocumentsOfOtherClientsAreRead() {
+        Routine empty = new Routine();
+        empty.setId(3);
+        BsonDocument document = encode(empty);
+        assertEquals(List.of("name", "_id", "exerciseSets"), List.copyOf(document.keySet())); // no owner
+        Routine read = decode(document);
+        assertNull(read.getRoutineName());
+        assertNull(read.getOwner());
+        assertEquals(List.of(), read.getExerciseSets());
+
+        // as written with Document, plus a weight stored as an int32 and an unknown field
+        Document legacy = Document.parse("{name: 'Legs', _id: 9, createdBy: 'Alberto', exerciseSets: [{exerciseName: 'Squat', "
+                + "setsType: 'WEIGHTED_REPETITIONS', sets: [{type: 'WARMUP', weight: 80, reps: 5}]}]}");
+        read = decode(legacy.toBsonDocument());
+        assertEquals("Legs", read.getRoutineName());
+        Set set = read.getExerciseSets().getFirst().getSets().getFirst();
+        assertEquals(Set.SetType.WARMUP, set.getSetType());
+        assertEquals(80.0, set.getWeight());
+        assertEquals(5, set.getReps());
+    }
+
+    // the mapping the connector did before the codec, as the baseline of the benchmark
+    private static Document toDocument(Routine routine) {
+        List<Document> exerciseSets = new ArrayList<>();
+        for (ExerciseSet exerciseSet : routine.getExerciseSets()) {
+            List<Document> sets = new ArrayList<>();
+            for (Set set : exerciseSet.getSets()) {
+                Document document = new Document("type", set.getSetType().name());
+                switch (exerciseSet.getExercise().getSetsType()) {
+                    case TIME -> document.append("duration", set.getDuration());
+                    case REPETITIONS -> document.append("reps", set.getReps());
+                    case TIME_DISTANCE -> document.append("duration", set.getDuration()).append("distance", set.getDistance());
+                    case WEIGHTED_REPETITIONS -> document.append("weight", set.getWeight()).append("reps", set.getReps());
+                }
+                sets.add(document);
+            }
+            exerciseSets.add(new Document("exerciseName", exerciseSet.getExercise().getExerciseName())
+                    .append("setsType", exerciseSet.getExercise().getSetsType().name()).append("sets", sets));
+        }
+        return new Document("name", routine.getRoutineName()).append("_id", routine.getId()).append("exerciseSets", exerciseSets);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // bytes allocated per operation, which unlike the time doesn't depend on the machine
+    private static long allocatedPerOperation(int iterations, Runnable operation) {
+        for (int i = 0; i < iterations; i++) {
+            operation.run(); // warm up
+        }
+        long bytes = allocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        return (allocatedBytes() - bytes) / iterations;
+    }
+
+    /**
+     * With a routine of 20 exercises and 500 sets, to and from the binary BSON sent to the server:
+     * the codec must allocate less than the Document mapping, both ways
+     */
+    @Test
+    public void codecAllocatesLessThanDocuments() {
+        Routine routine = routine(20, 25);
+        DocumentCodec documentCodec = new DocumentCodec();
+        BasicOutputBuffer encoded = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(encoded), routine, EncoderContext.builder().build());
+        byte[] bytes = encoded.toByteArray();
+        int iterations = 500;
+
+        long codecEncode = allocatedPerOperation(iterations, () ->
+                codec.encode(new BsonBinaryWriter(new BasicOutputBuffer(bytes.length)), routine, EncoderContext.builder().build()));
+        long documentEncode = allocatedPerOperation(iterations, () ->
+                documentCodec.encode(new BsonBinaryWriter(new BasicOutputBuffer(bytes.length)), toDocument(routine), EncoderContext.builder().build()));
+        long codecDecode = allocatedPerOperation(iterations, () ->
+                codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build()));
+        // only the Document tree, without walking it into a Routine
+        long documentDecode = allocatedPerOperation(iterations, () ->
+                documentCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(bytes)), DecoderContext.builder().build()));
+
+        assertTrue(codecEncode < documentEncode, "encode " + codecEncode + " vs " + documentEncode);
+        assertTrue(codecDecode < documentDecode, "decode " + codecDecode + " vs " + documentDecode);
+    }
+}
@@ -0,0 +1,185 @@
+package server;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import server.Database.ExerciseRepository;
+import server.Database.MongoDBConnector;
+import server.Database.RoutineConnector;
+import server.Database.RoutineQuery;
+import server.Model.Exercise;
+import server.Model.ExerciseSet;
+import server.Model.GymExercise;
+import server.Model.Routine;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RoutineConnectorTest {
+
+    // as read from mongo, with only the name and sets type of each exercise
+    private static ExerciseSet read(String exerciseName, Exercise.SetsType setsType) {
+        return new ExerciseSet(new GymExercise(exerciseName, setsType, null, null, null, null, null, null), new ArrayList<>());
+    }
+
+    private static Routine routine(int id, ExerciseSet... exerciseSets) {
+        return new Routine(id, "Routine " + id, new ArrayList<>(List.of(exerciseSets)));
+    }
+
+    @Test
+    public void exercisesOfAllRoutinesAreLookedUpOnce() {
+        MongoDBConnector mongo = mock(MongoDBConnector.class);
+        ExerciseRepository exercises = mock(ExerciseRepository.class);
+        List<Routine> routines = new ArrayList<>();
+        for (int id = 0; id < 100; id++) {
+            routines.add(routine(id, read("Barbell Bench Press", Exercise.SetsType.WEIGHTED_REPETITIONS),
+                    read("Push Up", Exercise.SetsType.REPETITIONS)));
+        }
+        when(mongo.findAllRoutines()).thenReturn(routines);
+        when(exercises.findExercisesByNames(Set.of("Barbell Bench Press", "Push Up")))
+                .thenReturn(Map.of("Barbell Bench Press", ExerciseCatalogTest.benchPress, "Push Up", ExerciseCatalogTest.pushUp));
+
+        List<Routine> found = new RoutineConnector(mongo, exercises).findAllRoutines();
+
+        verify(exercises, times(1)).findExercisesByNames(any());
+        verify(exercises, never()).findExerciseByName(any());
+        for (Routine routine : found) {
+            assertSame(ExerciseCatalogTest.benchPress, routine.getExerciseSets().get(0).getExercise());
+            assertSame(ExerciseCatalogTest.pushUp, routine.getExerciseSets().get(1).getExercise());
+        }
+    }
+
+    @Test
+    public void missingExercisesKeepWhatWasRead() {
+        MongoDBConnector mongo = mock(MongoDBConnector.class);
+        ExerciseRepository exercises = mock(ExerciseRepository.class);
+        ExerciseSet removed = read("Removed Exercise", Exercise.SetsType.TIME);
+        Exercise placeholder = removed.getExercise();
+        when(mongo.findById(1)).thenReturn(Optional.of(routine(1, read("Push Up", Exercise.SetsType.REPETITIONS), removed)));
+        when(exercises.findExercisesByNames(any())).thenReturn(Map.of("Push Up", ExerciseCatalogTest.pushUp));
+
+        Routine routine = new RoutineConnector(mongo, exercises).findById(1).orElseThrow();
+
+        assertSame(ExerciseCatalogTest.pushUp, routine.getExerciseSets().get(0).getExercise());
+        assertSame(placeholder, routine.getExerciseSets().get(1).getExercise());
+        assertEquals(Exercise.SetsType.TIME, routine.getExerciseSets().get(1).getExercise().getSetsType());
+        assertNotSame(ExerciseCatalogTest.pushUp, placeholder);
+    }
+
+    @Test
+    public void streamedRoutinesAreCompletedByBatches() {
+        MongoDBConnector mongo = mock(MongoDBConnector.class);
+        ExerciseRepository exercises = mock(ExerciseRepository.class);
+        when(mongo.getBatchSize()).thenReturn(2);
+        when(mongo.streamRoutines(any())).thenReturn(IntStream.range(0, 5)
+                .mapToObj(id -> routine(id, read("Push Up", Exercise.SetsType.REPETITIONS))));
+        when(exercises.findExercisesByNames(any())).thenReturn(Map.of("Push Up", ExerciseCatalogTest.pushUp));
+
+        try (Stream<Routine> routines = new RoutineConnector(mongo, exercises).streamRoutines(RoutineQuery.builder().build())) {
+            routines.forEach(routine -> assertSame(ExerciseCatalogTest.pushUp, routine.getExerciseSets().getFirst().getExercise()));
+        }
+        verify(exercises, times(3)).findExercisesByNames(any());
+
+        // without the exercise sets there is nothing to complete
+        when(mongo.streamRoutines(any())).thenReturn(Stream.of(routine(1)));
+        RoutineQuery names = RoutineQuery.builder().fields(List.of(RoutineQuery.Field.ROUTINE_NAME)).build();
+        try (Stream<Routine> routines = new RoutineConnector(mongo, exercises).streamRoutines(names)) {
+            assertEquals(1, routines.count());
+        }
+        verify(exercises, times(3)).findExercisesByNames(any());
+    }
+
+    @Test
+    public void routinesOfAUserAreReadByPages() {
+        MongoDBConnector mongo = mock(MongoDBConnector.class);
+        ExerciseRepository exercises = mock(ExerciseRepository.class);
+        when(mongo.streamRoutines(any())).thenAnswer(invocation -> Stream.of(routine(11), routine(12)));
+
+        List<Routine> routines = new RoutineConnector(mongo, exercises).findRoutinesCreatedByUser(UserEndpointsTest.Alberto, 10, 2);
+
+        assertEquals(List.of(11, 12), routines.stream().map(Routine::getId).toList());
+        ArgumentCaptor<RoutineQuery> query = ArgumentCaptor.forClass(RoutineQuery.class);
+        verify(mongo).streamRoutines(query.capture());
+        assertEquals("Alberto", query.getValue().getOwner());
+        assertEquals(10, query.getValue().getAfter());
+        assertEquals(2, query.getValue().getLimit());
+    }
+
+    @Test
+    public void filtersAreConditionsOfOneQuery() {
+        MongoDBConnector mongo = mock(MongoDBConnector.class);
+        ExerciseRepository exercises = mock(ExerciseRepository.class);
+        when(mongo.streamRoutines(any())).thenAnswer(invocation -> Stream.of(routine(21)));
+        when(exercises.findExerciseByName("push up")).thenReturn(Optional.of(ExerciseCatalogTest.pushUp));
+        when(exercises.findExerciseWithFilters(Map.of("muscle_group", "Chest")))
+                .thenReturn(Set.of(ExerciseCatalogTest.benchPress, ExerciseCatalogTest.pushUp));
+
+        Map<String, String> filters = new LinkedHashMap<>();
+        filters.put(RoutineConnector.EXERCISE_NAME_FILTER, "push up");
+        filters.put(RoutineConnector.MUSCLE_GROUP_FILTER, "Chest");
+        filters.put(RoutineConnector.SETS_TYPE_FILTER, "Weighted Repetitions");
+        filters.put(RoutineConnector.NAME_PREFIX_FILTER, "Upper (A.");
+        List<Routine> routines = new RoutineConnector(mongo, exercises).findRoutinesWithFilters(filters, 20, 10);
+
+        assertEquals(List.of(21), routines.stream().map(Routine::getId).toList());
+        ArgumentCaptor<RoutineQuery> captor = ArgumentCaptor.forClass(RoutineQuery.class);
+        verify(mongo).streamRoutines(captor.capture());
+        RoutineQuery query = captor.getValue();
+        assertEquals(2, query.getExercises().size());
+        assertEquals(List.of("Push Up"), query.getExercises().get(0), "names are looked for as the catalog has them");
+        assertEquals(Set.of("Barbell Bench Press", "Push Up"), Set.copyOf(query.getExercises().get(1)));
+        assertEquals(Exercise.SetsType.WEIGHTED_REPETITIONS, query.getSetsType());
+        assertEquals(20, query.getAfter());
+        assertEquals(10, query.getLimit());
+
+        BsonDocument filter = query.filter().toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+        BsonArray conditions = filter.getArray("$and");
+        assertEquals(BsonDocument.parse("{'exerciseSets.exerciseName': 'Push Up'}"), conditions.get(0));
+        assertEquals(2, conditions.get(1).asDocument().getDocument("exerciseSets.exerciseName").getArray("$in").size());
+        assertEquals(BsonDocument.parse("{'exerciseSets.setsType': 'WEIGHTED_REPETITIONS'}"), conditions.get(2));
+        assertEquals("^Upper \\(A\\.", conditions.get(3).asDocument().getRegularExpression("name").getPattern());
+        assertEquals(BsonDocument.parse("{_id: {$gt: 20}}"), conditions.get(4));
+    }
+
+    @Test
+    public void filtersNoRoutineCanMatchAreNotQueried() {
+        MongoDBConnector mongo = mock(MongoDBConnector.class);
+        ExerciseRepository exercises = mock(ExerciseRepository.class);
+        when(exercises.findExerciseWithFilters(any())).thenReturn(Set.of());
+        RoutineConnector connector = new RoutineConnector(mongo, exercises);
+
+        assertEquals(List.of(), connector.findRoutinesWithFilters(Map.of(RoutineConnector.MUSCLE_GROUP_FILTER, "Wings"), null, 10));
+        assertEquals(List.of(), connector.findRoutinesWithFilters(Map.of(RoutineConnector.SETS_TYPE_FILTER, "Laps"), null, 10));
+        assertThrows(IllegalArgumentException.class, () -> connector.findRoutinesWithFilters(Map.of("owner", "Alberto"), null, 10));
+        verify(mongo, never()).streamRoutines(any());
+    }
+
+    @Test
+    public void routinesWithoutExercisesNeedNoLookup() {
+        MongoDBConnector mongo = mock(MongoDBConnector.class);
+        ExerciseRepository exercises = mock(ExerciseRepository.class);
+        when(mongo.findAllRoutines()).thenReturn(List.of(routine(1), routine(2)));
+
+        assertEquals(2, new RoutineConnector(mongo, exercises).findAllRoutines().size());
+        verify(exercises, never()).findExercisesByNames(any());
+    }
+}
@@ -0,0 +1,203 @@
+package server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import server.Database.RoutineQuery;
+import server.Database.RoutineRepository;
+import server.Model.ExerciseSet;
+import server.Model.Routine;
+import server.Model.Set;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RoutineEndpointsTest extends ServerEndpointsTest {
+
+    private static final CodecRegistry registry = MongoClientSettings.getDefaultCodecRegistry();
+
+    @BeforeAll
+    public static void initialize() throws IOException {
+        startServer();
+    }
+
+    @AfterAll
+    public static void cleanUp() {
+        stopServer();
+    }
+
+    private static Routine routine(int id) {
+        List<Set> sets = List.of(Set.builder().setType(Set.SetType.NORMAL).reps(10).build());
+        return new Routine(id, "Routine " + id, new ArrayList<>(List.of(new ExerciseSet(ExerciseCatalogTest.pushUp, sets))));
+    }
+
+    @Test
+    public void wholeCollectionIsStreamed() {
+        RoutineRepository repository = mock(RoutineRepository.class);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(repository.streamRoutines(any())).thenReturn(IntStream.rangeClosed(1, 1000).mapToObj(RoutineEndpointsTest::routine)
+                .onClose(() -> closed.set(true)));
+        App.attachRoutineRepository(repository);
+        try {
+            HttpResponse<String> response = makeHttpRequest("routine", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            Map<String, Object> body = new ObjectMapper().readValue(response.body(), Map.class);
+            List<Map<String, Object>> routines = (List<Map<String, Object>>) body.get("routines");
+            assertEquals(1000, routines.size());
+            assertEquals("Routine 1", routines.getFirst().get("routineName"));
+            assertEquals("Push Up", ((Map<String, Object>) ((List<Map<String, Object>>) routines.getFirst().get("exerciseSets"))
+                    .getFirst().get("exercise")).get("exerciseName"));
+            assertFalse(body.containsKey("next"));
+            assertTrue(closed.get(), "the cursor must be closed");
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void pagesContinueAfterTheLastId() {
+        RoutineRepository repository = mock(RoutineRepository.class);
+        when(repository.streamRoutines(any())).thenAnswer(invocation -> Stream.of(routine(11), routine(12)));
+        App.attachRoutineRepository(repository);
+        try {
+            HttpResponse<String> response = makeHttpRequest("routine?after=10&limit=2&fields=routineName", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            Map<String, Object> body = new ObjectMapper().readValue(response.body(), Map.class);
+            assertEquals(12, body.get("next"));
+            assertEquals(List.of(Map.of("id", 11, "routineName", "Routine 11"), Map.of("id", 12, "routineName", "Routine 12")),
+                    body.get("routines"));
+
+            ArgumentCaptor<RoutineQuery> query = ArgumentCaptor.forClass(RoutineQuery.class);
+            verify(repository).streamRoutines(query.capture());
+            assertEquals(10, query.getValue().getAfter());
+            assertEquals(2, query.getValue().getLimit());
+            assertEquals(java.util.Set.of(RoutineQuery.Field.ROUTINE_NAME), query.getValue().getFields());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void invalidParametersAreRejected() {
+        RoutineRepository repository = mock(RoutineRepository.class);
+        App.attachRoutineRepository(repository);
+        try {
+            HttpResponse<String> response = makeHttpRequest("routine?fields=password", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals("Unknown field password", response.body());
+            response = makeHttpRequest("routine?limit=501", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            response = makeHttpRequest("routine?after=first", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            verify(repository, never()).streamRoutines(any());
+
+            when(repository.streamRoutines(any())).thenThrow(new IllegalStateException("Connection with mongodb not established"));
+            response = makeHttpRequest("routine", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, response.statusCode());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    // routines from 1 to failAfter, and then the cursor fails
+    private static Stream<Routine> failingAfter(int failAfter, AtomicBoolean closed) {
+        return Stream.iterate(1, id -> id + 1).map(id -> {
+            if (id > failAfter) {
+                throw new IllegalStateException("Cursor lost");
+            }
+            return routine(id);
+        }).onClose(() -> closed.set(true));
+    }
+
+    @Test
+    public void cursorErrorAfterTheFirstBytesCutsTheResponse() {
+        RoutineRepository repository = mock(RoutineRepository.class);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(repository.streamRoutines(any())).thenAnswer(invocation -> failingAfter(50, closed));
+        App.attachRoutineRepository(repository);
+        for (String encoding : List.of("identity", "gzip")) {
+            closed.set(false);
+            // the 200 is already sent, the connection is closed before the end of the chunked body
+            assertThrows(IOException.class, () -> makeHttpRequest("routine", HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofString(), "Accept-Encoding", encoding), encoding);
+            assertTrue(closed.get(), "the cursor must be closed");
+        }
+    }
+
+    @Test
+    public void cursorErrorBeforeAnythingIsSentAnswers500() {
+        RoutineRepository repository = mock(RoutineRepository.class);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(repository.streamRoutines(any())).thenAnswer(invocation -> failingAfter(1, closed));
+        App.attachRoutineRepository(repository);
+        try {
+            HttpResponse<String> response = makeHttpRequest("routine", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_INTERNAL_ERROR, response.statusCode());
+            assertEquals("Internal error", response.body());
+            assertTrue(closed.get(), "the cursor must be closed");
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void queryIsARangeOnTheId() {
+        RoutineQuery query = RoutineQuery.builder().after(10).limit(20).fields(List.of(RoutineQuery.Field.ROUTINE_NAME)).build();
+        assertEquals(BsonDocument.parse("{_id: {$gt: 10}}"), query.filter().toBsonDocument(BsonDocument.class, registry));
+        assertEquals(BsonDocument.parse("{name: 1}"), query.projection().toBsonDocument(BsonDocument.class, registry));
+        assertEquals(BsonDocument.parse("{_id: 1}"), query.sort().toBsonDocument(BsonDocument.class, registry));
+
+        RoutineQuery all = RoutineQuery.builder().build();
+        assertEquals(RoutineQuery.NO_LIMIT, all.getLimit());
+        assertEquals(BsonDocument.parse("{}"), all.filter().toBsonDocument(BsonDocument.class, registry));
+        assertEquals(BsonDocument.parse("{name: 1, owner: 1, exerciseSets: 1}"), all.projection().toBsonDocument(BsonDocument.class, registry));
+
+        // equality on owner and range on _id, the prefix of the (owner, _id) index
+        RoutineQuery owned = RoutineQuery.builder().owner("Alberto").after(10).limit(20).build();
+        assertEquals(BsonDocument.parse("{$and: [{owner: 'Alberto'}, {_id: {$gt: 10}}]}"), owned.filter().toBsonDocument(BsonDocument.class, registry));
+    }
+
+    @Test
+    public void routinesOfAnOwnerAreListed() {
+        RoutineRepository repository = mock(RoutineRepository.class);
+        Routine routine = routine(3);
+        routine.setOwner("Alberto");
+        when(repository.streamRoutines(any())).thenAnswer(invocation -> Stream.of(routine));
+        App.attachRoutineRepository(repository);
+        try {
+            HttpResponse<String> response = makeHttpRequest("routine?owner=Alberto&fields=owner,routineName", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            Map<String, Object> body = new ObjectMapper().readValue(response.body(), Map.class);
+            assertEquals(List.of(Map.of("id", 3, "routineName", "Routine 3", "owner", "Alberto")), body.get("routines"));
+
+            ArgumentCaptor<RoutineQuery> query = ArgumentCaptor.forClass(RoutineQuery.class);
+            verify(repository).streamRoutines(query.capture());
+            assertEquals("Alberto", query.getValue().getOwner());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+}
@@ -10,7 +10,7 @@ import java.net.http.HttpResponse;
 
 public class ServerEndpointsTest {
 
-    private String base_url = "http://localhost:8080";
+    protected String base_url = "http://localhost:8080";
     private static HttpServer server;
     protected enum HttpMethod {GET, POST, PUT, DELETE};
 
@@ -24,9 +24,21 @@ public class ServerEndpointsTest {
 
 
     protected HttpResponse<String> makeHttpRequest(String requestURL, HttpMethod httpMethod, String body) throws IOException, InterruptedException {
+        return makeHttpRequest(requestURL, httpMethod, body, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Same as makeHttpRequest but choosing how the body is read and adding request headers
+     * @param headers pairs of header name and value
+     */
+    protected <T> HttpResponse<T> makeHttpRequest(String requestURL, HttpMethod httpMethod, String body,
+                                                  HttpResponse.BodyHandler<T> bodyHandler, String... headers) throws IOException, InterruptedException {
         HttpClient client = HttpClient.newHttpClient();
         HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
                   .uri(URI.create(String.format("%s/%s", base_url, requestURL)));
+        if (headers.length > 0) {
+            requestBuilder.headers(headers);
+        }
         switch (httpMethod) {
             case GET -> requestBuilder.GET();
             case POST -> requestBuilder.POST(HttpRequest.BodyPublishers.ofString(body));
@@ -34,7 +46,7 @@ public class ServerEndpointsTest {
             case DELETE -> requestBuilder.method("DELETE", HttpRequest.BodyPublishers.ofString(body));
         }
         HttpRequest request = requestBuilder.build();
-        return client.send(request, HttpResponse.BodyHandlers.ofString());
+        return client.send(request, bodyHandler);
     }
 
     protected static void startServer() throws IOException {
@@ -0,0 +1,101 @@
+package server;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class StaticAssetEndpointsTest extends ServerEndpointsTest {
+
+    @BeforeAll
+    public static void setUp() throws IOException {
+        startServer();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        stopServer();
+    }
+
+    @Test
+    public void indexServesLoginPageTest() {
+        try {
+            HttpResponse<String> response = makeHttpRequest("", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            assertTrue(response.headers().firstValue("content-type").orElseThrow().startsWith("text/html"));
+            assertEquals("no-cache", response.headers().firstValue("cache-control").orElseThrow());
+            assertTrue(response.body().contains("login.js"));
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void scriptsAreVersionedAndCachedTest() {
+        try {
+            String page = makeHttpRequest("login.html", HttpMethod.GET, "").body();
+            Matcher matcher = Pattern.compile("\"/(logic/login\\.js\\?v=[^\"]+)\"").matcher(page);
+            assertTrue(matcher.find(), "Scripts should be referenced with their version");
+
+            HttpResponse<String> response = makeHttpRequest(matcher.group(1), HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            assertTrue(response.headers().firstValue("cache-control").orElseThrow().contains("immutable"));
+            assertTrue(response.body().contains("httpRequest('/user/login'"));
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void assetsArePrecompressedTest() {
+        try {
+            HttpResponse<byte[]> response = makeHttpRequest("logic/common-logic.js", HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofByteArray(), "Accept-Encoding", "gzip");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            assertEquals("gzip", response.headers().firstValue("content-encoding").orElseThrow());
+            String body;
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+                body = new String(gzip.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(body.contains("function httpRequest"));
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void matchingEtagAnswersNotModifiedTest() {
+        try {
+            HttpResponse<String> response = makeHttpRequest("styles/common-styles.css", HttpMethod.GET, "");
+            String etag = response.headers().firstValue("etag").orElseThrow();
+
+            HttpResponse<String> notModified = makeHttpRequest("styles/common-styles.css", HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofString(), "If-None-Match", etag);
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, notModified.statusCode());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void unknownAssetTest() {
+        try {
+            HttpResponse<String> response = makeHttpRequest("pochoclo.html", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.statusCode());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+}
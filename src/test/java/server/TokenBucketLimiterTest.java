@@ -0,0 +1,64 @@
+package server;
+
+import org.junit.jupiter.api.Test;
+import server.Utils.TokenBucketLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1000));
+
+    @Test
+    public void allowsBurstThenRejects() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(3, 1, 100, clock::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("127.0.0.1"));
+        }
+        long wait = limiter.tryAcquire("127.0.0.1");
+        assertEquals(TimeUnit.SECONDS.toNanos(1), wait);
+        assertEquals(1, limiter.getRejected());
+
+        // other keys have their own bucket
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    public void refillsOverTime() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(2, 2, 100, clock::get);
+
+        assertEquals(0, limiter.tryAcquire("Alberto"));
+        assertEquals(0, limiter.tryAcquire("Alberto"));
+        assertTrue(limiter.tryAcquire("Alberto") > 0);
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, limiter.tryAcquire("Alberto"));
+        assertTrue(limiter.tryAcquire("Alberto") > 0);
+
+        // a long idle time doesn't give more tokens than the burst
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+        assertEquals(0, limiter.tryAcquire("Alberto"));
+        assertEquals(0, limiter.tryAcquire("Alberto"));
+        assertTrue(limiter.tryAcquire("Alberto") > 0);
+    }
+
+    @Test
+    public void keysAreBounded() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1, 10, clock::get);
+
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire("client" + i);
+        }
+        assertTrue(limiter.getKeys() <= 11, "Buckets should be evicted, there are " + limiter.getKeys());
+
+        // full buckets are evicted first, without forgetting the ones in use
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        limiter.tryAcquire("attacker");
+        assertTrue(limiter.tryAcquire("attacker") > 0);
+    }
+}
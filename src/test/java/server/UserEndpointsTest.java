@@ -6,22 +6,36 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import server.Controllers.UserController;
+import server.Database.IdentityMapUserRepository;
 import server.Database.MySqlConnector;
+import server.Database.RequestScope;
 import server.Model.FriendRequest;
+import server.Model.FriendRequestSummary;
 import server.Model.LazyReference;
 import server.Model.User;
+import server.Model.UserReference;
 import server.Utils.FriendRequestService;
+import server.Utils.ResourceVersions;
 import server.Utils.UserTokenService;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -30,6 +44,7 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -76,7 +91,7 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         App.attachDatabaseManager(connector);
         try {
             HttpResponse<String> response = makeHttpRequest("user/pochoclo", HttpMethod.POST, "");
-            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.statusCode());
             assertTrue(response.body().contains("Unrecognized endpoint"));
         } catch (IOException | InterruptedException ex) {
             fail("Unexpected exception happened: " + ex.getMessage());
@@ -98,6 +113,82 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         }
     }
 
+    @Test
+    public void userWithMutualFriendsEndpointTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        Alberto.setFriends(Set.of(new UserReference(Alonso)));
+        Alonso.setFriends(Set.of(new UserReference(Alberto)));
+        when(mySqlConnector.findByUsername(Alberto.getUsername())).thenReturn(Optional.of(Alberto));
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            HttpResponse<String> response = makeHttpRequest("user?username=" + Alberto.getUsername(), HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            Map<String, Object> user = new ObjectMapper().readValue(response.body(), Map.class);
+            assertEquals(List.of(Alonso.getUsername()), user.get("friends"));
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void userFindByUsernameNotModifiedEndpointTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        when(mySqlConnector.findByUsername(Alberto.getUsername())).thenReturn(Optional.of(Alberto));
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            HttpResponse<String> response = makeHttpRequest("user?username=" + Alberto.getUsername(), HttpMethod.GET, "");
+            String etag = response.headers().firstValue("etag").orElseThrow();
+
+            HttpResponse<String> notModified = makeHttpRequest("user?username=" + Alberto.getUsername(), HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofString(), "If-None-Match", etag);
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, notModified.statusCode());
+            verify(mySqlConnector, times(1)).findByUsername(Alberto.getUsername());
+
+            ResourceVersions.bump(ResourceVersions.user(Alberto.getUsername()));
+            HttpResponse<String> modified = makeHttpRequest("user?username=" + Alberto.getUsername(), HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofString(), "If-None-Match", etag);
+            assertEquals(HttpURLConnection.HTTP_OK, modified.statusCode());
+            assertTrue(!etag.equals(modified.headers().firstValue("etag").orElseThrow()));
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void etagIsWeakWhetherCompressedOrNot() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        User popular = new User("popular", "password", Calendar.getInstance());
+        Set<LazyReference<User>> friends = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            friends.add(new UserReference(new User("friend" + i, "password", Calendar.getInstance())));
+        }
+        popular.setFriends(friends);
+        when(mySqlConnector.findByUsername(popular.getUsername())).thenReturn(Optional.of(popular));
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            HttpResponse<byte[]> gzipped = makeHttpRequest("user?username=popular", HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofByteArray(), "Accept-Encoding", "gzip");
+            assertEquals("gzip", gzipped.headers().firstValue("content-encoding").orElse(""));
+            HttpResponse<String> identity = makeHttpRequest("user?username=popular", HttpMethod.GET, "");
+            assertTrue(identity.headers().firstValue("content-encoding").isEmpty());
+
+            // the bytes differ, so the tag shared by both encodings must be weak
+            String gzipEtag = gzipped.headers().firstValue("etag").orElseThrow();
+            String identityEtag = identity.headers().firstValue("etag").orElseThrow();
+            assertTrue(gzipEtag.startsWith("W/\""), gzipEtag);
+            assertEquals(identityEtag, gzipEtag);
+
+            HttpResponse<String> notModified = makeHttpRequest("user?username=popular", HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofString(), "If-None-Match", gzipEtag);
+            assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, notModified.statusCode());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
     @Test
     public void userFindByUsernameNotFoundEndpointTest() {
         MySqlConnector mySqlConnector = mock(MySqlConnector.class);
@@ -116,7 +207,7 @@ public class UserEndpointsTest extends ServerEndpointsTest {
     @Test
     public void userFindAllEndpointTest() {
         MySqlConnector mySqlConnector = mock(MySqlConnector.class);
-        when(mySqlConnector.findAllUsers()).thenReturn(List.of(Alberto, Alonso, Nico, Unai));
+        when(mySqlConnector.streamAllUsers()).thenAnswer(invocation -> Stream.of(Alberto, Alonso, Nico, Unai));
         App.attachDatabaseManager(mySqlConnector);
 
         try {
@@ -130,7 +221,7 @@ public class UserEndpointsTest extends ServerEndpointsTest {
     @Test
     public void userFindAllEmptyEndpointTest() {
         MySqlConnector mySqlConnector = mock(MySqlConnector.class);
-        when(mySqlConnector.findAllUsers()).thenReturn(new ArrayList<>());
+        when(mySqlConnector.streamAllUsers()).thenAnswer(invocation -> Stream.empty());
         App.attachDatabaseManager(mySqlConnector);
 
         try {
@@ -141,6 +232,67 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         }
     }
 
+    @Test
+    public void userFindAllIsStreamedEndpointTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            users.add(new User("user" + i, "password", Calendar.getInstance()));
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        when(mySqlConnector.streamAllUsers()).thenAnswer(invocation -> users.stream().onClose(() -> closed.set(true)));
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            HttpResponse<String> response = makeHttpRequest("user", HttpMethod.GET, "");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            assertTrue(response.headers().firstValue("content-length").isEmpty());
+            assertEquals("chunked", response.headers().firstValue("transfer-encoding").orElse(""));
+            assertEquals(new ObjectMapper().writeValueAsString(users), response.body());
+            assertTrue(closed.get()); // the connection held by the stream is given back
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void userFindAllCompressedEndpointTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            users.add(new User("user" + i, "password", Calendar.getInstance()));
+        }
+        when(mySqlConnector.streamAllUsers()).thenAnswer(invocation -> users.stream());
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            HttpResponse<byte[]> response = makeHttpRequest("user", HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofByteArray(), "Accept-Encoding", "gzip, deflate");
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+            assertEquals("gzip", response.headers().firstValue("content-encoding").orElse(""));
+            String body = new String(new GZIPInputStream(new ByteArrayInputStream(response.body())).readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(new ObjectMapper().writeValueAsString(users), body);
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void smallResponseNotCompressedEndpointTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        when(mySqlConnector.findByUsername(Alberto.getUsername())).thenReturn(Optional.of(Alberto));
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            HttpResponse<String> response = makeHttpRequest("user?username=" + Alberto.getUsername(), HttpMethod.GET, "",
+                    HttpResponse.BodyHandlers.ofString(), "Accept-Encoding", "gzip");
+            assertTrue(response.headers().firstValue("content-encoding").isEmpty());
+            assertEquals(new ObjectMapper().writeValueAsString(Alberto), response.body());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
     @Test
     public void createValidUserEndpointTest() {
         MySqlConnector mySqlConnector = mock(MySqlConnector.class);
@@ -320,6 +472,35 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         }
     }
 
+    @Test
+    public void friendRequestReadsEachUserOnce() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        IdentityMapUserRepository userRepository = new IdentityMapUserRepository(mySqlConnector);
+        App.attachDatabaseManager(userRepository);
+        FriendRequestService.init(userRepository);
+
+        when(mySqlConnector.findByUsername(Alberto.getUsername())).thenReturn(Optional.of(Alberto));
+        when(mySqlConnector.findByUsername(Unai.getUsername())).thenReturn(Optional.of(Unai));
+        when(mySqlConnector.findFriendRequestsByRequester(Alberto)).thenReturn(Set.of());
+        try {
+            String token = UserTokenService.generateToken(Alberto.getUsername());
+            String requestBody = new ObjectMapper().writeValueAsString(Map.of("session_token", token, "requested", Unai.getUsername()));
+            HttpResponse<String> response = makeHttpRequest("user/friend", HttpMethod.POST, requestBody);
+            assertEquals(HttpURLConnection.HTTP_OK, response.statusCode());
+
+            // the controller and FriendRequestService.addRequest both read the requester
+            verify(mySqlConnector, times(1)).findByUsername(Alberto.getUsername());
+            verify(mySqlConnector, times(1)).findByUsername(Unai.getUsername());
+            Map<String, Object> routeStats = (Map<String, Object>) RequestScope.stats().get("POST /user/friend");
+            assertTrue((long) routeStats.get("requests") > 0);
+
+            makeHttpRequest("user/friend", HttpMethod.POST, requestBody);
+            verify(mySqlConnector, times(2)).findByUsername(Alberto.getUsername()); // not kept between requests
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happen: " + ex.getMessage());
+        }
+    }
+
     @Test
     public void testAcceptFriendRequest() {
         MySqlConnector mySqlConnector = mock(MySqlConnector.class);
@@ -616,6 +797,97 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         }
     }
 
+    @Test
+    public void tooLargeBodyTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            String requestBody = new ObjectMapper().writeValueAsString(Map.of("username", "a".repeat(100_000), "password", "password"));
+            HttpResponse<String> response = makeHttpRequest("user/login", HttpMethod.POST, requestBody);
+
+            assertEquals(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, response.statusCode());
+            verify(mySqlConnector, never()).findByUsername(anyString());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void tooLargeChunkedBodyTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            String requestBody = new ObjectMapper().writeValueAsString(Map.of("username", "a".repeat(100_000), "password", "password"));
+            // a publisher of unknown length is sent chunked, so the limit is only found while reading the value
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(base_url + "/user/login"))
+                    .POST(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofString(requestBody))).build();
+            HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(HttpURLConnection.HTTP_ENTITY_TOO_LARGE, response.statusCode());
+            assertEquals("Request body too large", response.body());
+            verify(mySqlConnector, never()).findByUsername(anyString());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void malformedBodyTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            HttpResponse<String> response = makeHttpRequest("user/login", HttpMethod.POST, "{\"username\": \"alberto\", password}");
+
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals("Malformed json body", response.body());
+            verify(mySqlConnector, never()).findByUsername(anyString());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void bodyOfAnotherShapeTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            for (String body : List.of("[\"alberto\", \"password\"]", "{\"username\": {\"name\": \"alberto\"}}",
+                    "{\"username\": \"alberto\", \"password\": \"password\"} {\"username\": \"alonso\"}")) {
+                HttpResponse<String> response = makeHttpRequest("user/login", HttpMethod.POST, body);
+                assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode(), body);
+                assertEquals("Malformed json body", response.body());
+            }
+            HttpResponse<String> response = makeHttpRequest("user/friend", HttpMethod.DELETE, "{\"friend\": [\"alonso\"]}");
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            verify(mySqlConnector, never()).findByUsername(anyString());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
+    @Test
+    public void emptyChunkedBodyTest() {
+        MySqlConnector mySqlConnector = mock(MySqlConnector.class);
+        App.attachDatabaseManager(mySqlConnector);
+
+        try {
+            // a publisher of unknown length is sent chunked, without Content-Length
+            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(base_url + "/user/login"))
+                    .POST(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.noBody())).build();
+            HttpResponse<String> response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals("Missing request body", response.body());
+            verify(mySqlConnector, never()).findByUsername(anyString());
+        } catch (IOException | InterruptedException ex) {
+            fail("Unexpected exception happened: " + ex.getMessage());
+        }
+    }
+
     @Test
     public void unrecognizedEndpointTest() {
         MySqlConnector mySqlConnector = mock(MySqlConnector.class);
@@ -625,7 +897,7 @@ public class UserEndpointsTest extends ServerEndpointsTest {
             String requestBody = new ObjectMapper().writeValueAsString(Map.of("session_token", "value"));
             HttpResponse<String> response = makeHttpRequest("user/unknownEndpoint", HttpMethod.POST, requestBody);
 
-            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.statusCode());
             assertTrue(response.body().contains("Unrecognized endpoint"));
         } catch (IOException | InterruptedException ex) {
             fail("Unexpected exception happened: " + ex.getMessage());
@@ -885,7 +1157,7 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         App.attachDatabaseManager(connector);
         try {
             HttpResponse<String> response = makeHttpRequest("user/pochoclo", HttpMethod.GET, null);
-            assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, response.statusCode());
+            assertEquals(HttpURLConnection.HTTP_NOT_FOUND, response.statusCode());
             assertTrue(response.body().contains("Unrecognized endpoint"));
         } catch (IOException | InterruptedException ex) {
             fail("Unexpected exception happened: " + ex.getMessage());
@@ -898,10 +1170,10 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         App.attachDatabaseManager(connector);
 
         Calendar date = Calendar.getInstance();
-        FriendRequest request1 = new FriendRequest(Unai, Alberto, date);
-        FriendRequest request2 = new FriendRequest(Alonso, Alberto, date);
+        FriendRequestSummary request1 = new FriendRequestSummary(Unai.getUsername(), date);
+        FriendRequestSummary request2 = new FriendRequestSummary(Alonso.getUsername(), date);
 
-        when(connector.findFriendRequestsByRequested(Alberto)).thenReturn(Set.of(request1, request2));
+        when(connector.findIncomingRequestSummaries(Alberto.getUsername())).thenReturn(List.of(request1, request2));
         when(connector.findByUsername(Alberto.getUsername())).thenReturn(Optional.of(Alberto));
         when(connector.findByUsername(Unai.getUsername())).thenReturn(Optional.of(Unai));
         when(connector.findByUsername(Alonso.getUsername())).thenReturn(Optional.of(Alonso));
@@ -962,9 +1234,9 @@ public class UserEndpointsTest extends ServerEndpointsTest {
         when(connector.findByUsername(Alonso.getUsername())).thenReturn(Optional.of(Alonso));
 
         Calendar dateTime = Calendar.getInstance();
-        FriendRequest friendRequest1 = new FriendRequest(Alonso, Unai, dateTime);
-        FriendRequest friendRequest2 = new FriendRequest(Alonso, Alberto, dateTime);
-        when(connector.findFriendRequestsByRequester(Alonso)).thenReturn(Set.of(friendRequest1, friendRequest2));
+        FriendRequestSummary friendRequest1 = new FriendRequestSummary(Unai.getUsername(), dateTime);
+        FriendRequestSummary friendRequest2 = new FriendRequestSummary(Alberto.getUsername(), dateTime);
+        when(connector.findOutgoingRequestSummaries(Alonso.getUsername())).thenReturn(List.of(friendRequest1, friendRequest2));
 
         FriendRequestService.init(connector);
 